@@ -18,8 +18,14 @@ export const login = (user) => {
   });
 }
 
-export const setAuthorizationHeader = ({username, password, isLoggedIn}) => {
-  if (isLoggedIn) {
+export const refreshToken = (refreshToken) => {
+  return axios.post(endpoint('/api/v1/login/refresh'), {refreshToken});
+}
+
+export const setAuthorizationHeader = ({username, password, token, isLoggedIn}) => {
+  if (isLoggedIn && token) {
+    axios.defaults.headers.common['Authorization'] = `Bearer ${token}`;
+  } else if (isLoggedIn) {
     axios.defaults.headers.common['Authorization'] = `Basic ${
       btoa(username + ':' + password)
     }`;
@@ -68,8 +74,8 @@ export function loadHoaxes(username) {
 
 export function loadOldHoaxes(hoaxId, username) {
   const basePath = username
-    ? `/api/v1/users/${username}/hoaxes/${hoaxId}?direction=before&page=0&size=5&sort=id,desc`
-    : `/api/v1/hoaxes/${hoaxId}?direction=before&page=0&size=5&sort=id,desc`;
+    ? `/api/v1/users/${username}/hoaxes?limit=5&before=${hoaxId}`
+    : `/api/v1/hoaxes?limit=5&before=${hoaxId}`;
 
   return axios.get(endpoint(basePath), {
     headers: {
@@ -101,3 +107,18 @@ export function loadNewHoaxCount(hoaxId, username) {
     }
   });
 }
+
+export function subscribeToNewHoaxes(username, {onHoax, onResync}) {
+  if (typeof window.EventSource === 'undefined') {
+    return undefined;
+  }
+  const basePath = username
+    ? `/api/v1/users/${username}/hoaxes/stream`
+    : '/api/v1/hoaxes/stream';
+
+  const source = new window.EventSource(endpoint(basePath));
+  source.addEventListener('hoax', event => onHoax(JSON.parse(event.data)));
+  source.addEventListener('resync', onResync);
+  source.addEventListener('open', onResync);
+  return source;
+}
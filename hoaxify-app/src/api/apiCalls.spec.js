@@ -101,20 +101,20 @@ describe('apiCalls', () => {
   });
 
   describe('loadOldHoaxes', () => {
-    it('calls /api/v1/hoaxes/5?direction=before&page=0&size=5&sort=id,desc when hoaxId param provided', () => {
+    it('calls /api/v1/hoaxes?limit=5&before=5 when hoaxId param provided', () => {
       const mockGetOldHoaxes = jest.fn();
       axios.get = mockGetOldHoaxes;
       apiCalls.loadOldHoaxes(5);
       const path = mockGetOldHoaxes.mock.calls[0][0];
-      expect(path).toBe('/api/v1/hoaxes/5?direction=before&page=0&size=5&sort=id,desc');
+      expect(path).toBe('/api/v1/hoaxes?limit=5&before=5');
     });
 
-    it('calls /api/v1/users/user1/hoaxes/5?direction=before&page=0&size=5&sort=id,desc when hoaxId and username params provided', () => {
+    it('calls /api/v1/users/user1/hoaxes?limit=5&before=5 when hoaxId and username params provided', () => {
       const mockGetOldHoaxes = jest.fn();
       axios.get = mockGetOldHoaxes;
       apiCalls.loadOldHoaxes(5, 'user1');
       const path = mockGetOldHoaxes.mock.calls[0][0];
-      expect(path).toBe('/api/v1/users/user1/hoaxes/5?direction=before&page=0&size=5&sort=id,desc');
+      expect(path).toBe('/api/v1/users/user1/hoaxes?limit=5&before=5');
     });
   });
 
@@ -24,6 +24,24 @@ class HoaxFeed extends Component {
       })
   }
 
+  onNewHoax = (hoax) => {
+    const hoaxes = this.state.page.content;
+    const topHoaxId = hoaxes.length ? hoaxes[0].id : 0;
+    if (hoax.id > topHoaxId) {
+      this.setState(state => ({newHoaxCount: state.newHoaxCount + 1}));
+    }
+  }
+
+  watchNewHoaxes = () => {
+    this.eventSource = apiCalls.subscribeToNewHoaxes(this.props.user, {
+      onHoax: this.onNewHoax,
+      onResync: this.checkCount
+    });
+    if (!this.eventSource) {
+      this.counterId = setInterval(this.checkCount, 3000);
+    }
+  }
+
   onClickLoadNew = () => {
     const hoaxes = this.state.page.content;
     const topHoaxId = hoaxes.length ? hoaxes[0].id : 0;
@@ -49,9 +67,7 @@ class HoaxFeed extends Component {
         this.setState({
           page: response.data,
           isLoadingHoaxes: false
-        }, () => {
-          this.counterId = setInterval(this.checkCount, 3000);
-        });
+        }, this.watchNewHoaxes);
       });
   };
 
@@ -80,6 +96,9 @@ class HoaxFeed extends Component {
 
   componentWillUnmount() {
     clearInterval(this.counterId);
+    if (this.eventSource) {
+      this.eventSource.close();
+    }
   }
 
   render() {
@@ -5,7 +5,10 @@ import {endpoint} from "../environment";
 const ProfileImageWithDefault = (props) => {
   let imageSource = defaultPicture;
   if (props.image) {
-    imageSource = endpoint(`/images/profile/${props.image}`);
+    // the server answers ?size= with the smallest stored variant at least that large
+    const size = Math.ceil(parseInt(props.width, 10) * (window.devicePixelRatio || 1));
+    const query = size > 0 ? `?size=${size}` : '';
+    imageSource = endpoint(`/images/profile/${props.image}${query}`);
   }
   return (
     <img {...props}
@@ -21,6 +21,12 @@ export default function authReducer(state = initialState, action) {
         ...action.payload,
         isLoggedIn: true
       };
+    case 'TOKEN_REFRESHED':
+      return {
+        ...state,
+        token: action.payload.token,
+        refreshToken: action.payload.refreshToken,
+      };
     case 'UPDATE_SUCCESS':
       return {
         ...state,
@@ -1,3 +1,4 @@
+import axios from 'axios';
 import {createStore, applyMiddleware} from 'redux';
 import authReducer from "./authReducer";
 import logger from 'redux-logger';
@@ -35,6 +36,23 @@ const configureStore = (addLogger = true) => {
     apiCalls.setAuthorizationHeader(state);
   });
 
+  axios.interceptors.response.use(undefined, error => {
+    const {refreshToken} = store.getState();
+    const request = error.config;
+    if (!refreshToken || !request || request.isRetry || !error.response || error.response.status !== 401) {
+      return Promise.reject(error);
+    }
+    return apiCalls.refreshToken(refreshToken).then(response => {
+      store.dispatch({type: 'TOKEN_REFRESHED', payload: response.data});
+      request.isRetry = true;
+      request.headers['Authorization'] = `Bearer ${response.data.token}`;
+      return axios(request);
+    }, () => {
+      store.dispatch({type: 'LOGOUT_SUCCESS'});
+      return Promise.reject(error);
+    });
+  });
+
   return store;
 }
 
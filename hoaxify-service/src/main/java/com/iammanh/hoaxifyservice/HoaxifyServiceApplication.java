@@ -8,10 +8,12 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.stream.IntStream;
 
 @SpringBootApplication
+@EnableScheduling
 public class HoaxifyServiceApplication {
 
 	public static void main(String[] args) {
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+import java.util.List;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "hoaxify")
@@ -12,6 +15,59 @@ public class AppConfiguration {
     private String uploadPath;
     private String profileImagesFolder = "profile";
     private String attachmentsFolder = "attachments";
+    private String tempFolder = "tmp";
+    private String cacheFolder = "cache";
+
+    private StorageType storage = StorageType.LOCAL;
+    private String s3Endpoint;
+    private String s3Region = "us-east-1";
+    private String s3Bucket;
+    private String s3AccessKey;
+    private String s3SecretKey;
+    private boolean s3PathStyleAccess;
+    private long s3PartSize = 8 * 1024 * 1024;
+    private int s3UploadThreads = 4;
+    private long storageCacheSize = 512 * 1024 * 1024;
+
+    private List<Integer> profileImageVariants = Arrays.asList(32, 64, 200);
+    private long profileImageMaxPixels = 4096L * 4096;
+
+    private int imageWorkerThreads = 2;
+    private int imageQueueCapacity = 16;
+
+    private long attachmentChunkSize = 1024 * 1024;
+    private long attachmentMaxSize = 10 * 1024 * 1024;
+    private long attachmentOrphanTtl = 60 * 60 * 1000L;
+
+    private long imageCacheSize = 32 * 1024 * 1024;
+    private long imageCacheMaxFileSize = 64 * 1024;
+
+    private int streamBufferSize = 32;
+    private long streamTimeout = 30 * 60 * 1000L;
+    private long streamHeartbeatInterval = 15 * 1000L;
+
+    private long authCacheSize = 10_000;
+    private long authCacheTtl = 5 * 60 * 1000L;
+
+    private long userCacheSize = 10_000;
+    private long userCacheTtl = 10 * 60 * 1000L;
+
+    private int feedCacheSize = 50;
+    private long feedCacheAuthors = 1_000;
+    private long feedCacheAuthorIdle = 10 * 60 * 1000L;
+
+    private long timelineFanOutLimit = 10_000;
+    private int timelineBackfill = 100;
+
+    private String searchIndexFolder;
+    private long searchRecencyHalfLife = 7 * 24 * 60 * 60 * 1000L;
+
+    private int sqlBudgetStatements = 20;
+    private long sqlBudgetTime = 200;
+
+    private String tokenSecret;
+    private long accessTokenTtl = 15 * 60 * 1000L;
+    private long refreshTokenTtl = 7 * 24 * 60 * 60 * 1000L;
 
     public String getFullProfileImagesPath() {
         return uploadPath + "/" + profileImagesFolder;
@@ -20,4 +76,20 @@ public class AppConfiguration {
     public String getFullAttachmentsPath() {
         return uploadPath + "/" + attachmentsFolder;
     }
+
+    public String getFullTempPath() {
+        return uploadPath + "/" + tempFolder;
+    }
+
+    public String getFullCachePath() {
+        return uploadPath + "/" + cacheFolder;
+    }
+
+    public String getFullSearchIndexPath() {
+        return uploadPath + "/" + searchIndexFolder;
+    }
+
+    public enum StorageType {
+        LOCAL, S3
+    }
 }
@@ -0,0 +1,83 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iammanh.hoaxifyservice.user.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers credentials that already passed BCrypt verification so repeated Basic
+ * auth requests skip the hash and the user lookup.
+ * <p>
+ * Entries are keyed by an HMAC of {@code username:password}, the decoded Authorization
+ * header, under a key generated at startup, so neither the password nor an offline
+ * attackable hash of it is ever kept in memory.
+ */
+@Component
+public class AuthenticationCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, User> cache;
+    private final SecretKeySpec secretKey;
+    private final ThreadLocal<Mac> mac;
+
+    public AuthenticationCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(appConfiguration.getAuthCacheSize())
+                .expireAfterWrite(appConfiguration.getAuthCacheTtl(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        this.secretKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::createMac);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "authentication");
+    }
+
+    public String keyOf(String username, String password) {
+        byte[] credentials = (username + ":" + password).getBytes(StandardCharsets.UTF_8);
+        return Base64.getEncoder().encodeToString(mac.get().doFinal(credentials));
+    }
+
+    public User get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(String key, User user) {
+        cache.put(key, user);
+    }
+
+    public void evict(long userId) {
+        cache.asMap().values().removeIf(user -> user.getId() == userId);
+    }
+
+    public void evict(String username) {
+        cache.asMap().values().removeIf(user -> user.getUsername().equals(username));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(secretKey);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Adds a read replica when {@code hoaxify.replica-datasource.jdbc-url} is set, without it
+ * Spring Boot's single {@code spring.datasource} pool is used.
+ * <p>
+ * The primary pool is configured as usual under {@code spring.datasource}, the replica pool
+ * takes the Hikari settings directly under {@code hoaxify.replica-datasource} and opens its
+ * connections read-only. Read-only transactions go to the replica, see
+ * {@link ReadReplicaRoutingDataSource}, and may not see the latest writes. Flyway always
+ * migrates the primary.
+ */
+@Configuration
+@ConditionalOnProperty("hoaxify.replica-datasource.jdbc-url")
+public class DataSourceConfiguration {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("hoaxify.replica-datasource")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReadReplicaRoutingDataSource(primary, replica));
+    }
+}
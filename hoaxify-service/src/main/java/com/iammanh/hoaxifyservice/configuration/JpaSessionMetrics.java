@@ -0,0 +1,70 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.BaseSessionEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how many JDBC statements each Hibernate session executes and how long they take
+ * together. Open session in view is off, so a session lasts one transaction or one
+ * repository call, and a request can open several. Per request numbers are recorded by
+ * {@link com.iammanh.hoaxifyservice.sql.SqlBudgetFilter}.
+ * <p>
+ * Hibernate creates a listener for every session from {@code hibernate.session.events.auto},
+ * like Hibernate's statistics logging listener, so it cannot be a bean and records to
+ * the global registry, which Spring Boot adds its registries to. Sessions without statements
+ * are not recorded.
+ */
+public class JpaSessionMetrics extends BaseSessionEventListener {
+
+    private static final DistributionSummary STATEMENTS = DistributionSummary.builder("hoaxify.jpa.session.statements")
+            .description("JDBC statements executed by one session")
+            .publishPercentileHistogram()
+            .maximumExpectedValue(1000L)
+            .register(Metrics.globalRegistry);
+
+    private static final Timer TIME = Timer.builder("hoaxify.jpa.session.time")
+            .description("Time one session spent executing JDBC statements")
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofNanos(100_000))
+            .maximumExpectedValue(Duration.ofSeconds(10))
+            .register(Metrics.globalRegistry);
+
+    private int statements;
+    private long nanos;
+    private long start;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        nanos += System.nanoTime() - start;
+        statements++;
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        nanos += System.nanoTime() - start;
+        statements++;
+    }
+
+    @Override
+    public void end() {
+        if (statements == 0)
+            return;
+        STATEMENTS.record(statements);
+        TIME.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,7 +1,10 @@
 package com.iammanh.hoaxifyservice.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -10,6 +13,7 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -17,10 +21,22 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @EnableGlobalMethodSecurity(prePostEnabled = true)
 public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
+    /**
+     * Work factor of stored password hashes, every verification costs 2^strength rounds.
+     */
+    public static final int BCRYPT_STRENGTH = 10;
+
     private final AuthUserService authUserService;
+    private final AuthenticationCache authenticationCache;
+    private final TokenService tokenService;
+    private final MeterRegistry meterRegistry;
 
-    public SecurityConfiguration(AuthUserService authUserService) {
+    public SecurityConfiguration(AuthUserService authUserService, AuthenticationCache authenticationCache, TokenService tokenService,
+                                 MeterRegistry meterRegistry) {
         this.authUserService = authUserService;
+        this.authenticationCache = authenticationCache;
+        this.tokenService = tokenService;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -29,23 +45,46 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         http.headers().disable();
         http.httpBasic().authenticationEntryPoint(new BasicAuthenticationEntryPoint());
         http.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+        http.addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class);
         http
             .authorizeRequests()
                 .antMatchers(HttpMethod.POST, "/api/v1/login").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/v1/logout").authenticated()
                 .antMatchers(HttpMethod.PUT, "/api/v1/users/{id:[0-9]+}").authenticated()
+                .antMatchers(HttpMethod.PUT, "/api/v1/users/{id:[0-9]+}/image").authenticated()
                 .antMatchers(HttpMethod.POST, "/api/v1/hoaxes").authenticated()
+                .antMatchers(HttpMethod.POST, "/api/v1/hoaxes/batch").authenticated()
+                .antMatchers("/api/v1/attachments/**").authenticated()
+                .antMatchers("/api/v1/users/*/followers").authenticated()
+                .antMatchers(HttpMethod.GET, "/api/v1/timeline").authenticated()
             .and()
             .authorizeRequests().anyRequest().permitAll();
     }
 
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(authUserService).passwordEncoder(passwordEncoder());
+        Timer lookup = authenticationTimer("lookup");
+        Timer password = authenticationTimer("password");
+        PasswordEncoder passwordEncoder = passwordEncoder();
+        DaoAuthenticationProvider daoAuthenticationProvider = new DaoAuthenticationProvider();
+        daoAuthenticationProvider.setUserDetailsService(username -> lookup.record(() -> authUserService.loadUserByUsername(username)));
+        daoAuthenticationProvider.setPasswordEncoder(new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return passwordEncoder.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return password.record(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+            }
+        });
+        auth.authenticationProvider(new CachingAuthenticationProvider(daoAuthenticationProvider, authenticationCache));
     }
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(BCRYPT_STRENGTH);
     }
 
     @Bean
@@ -59,4 +98,15 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             }
         };
     }
+
+    /**
+     * Time spent on Basic authentication that missed the cache, {@code lookup} loads the
+     * user, {@code password} is the BCrypt check.
+     */
+    private Timer authenticationTimer(String step) {
+        return Timer.builder("hoaxify.authentication")
+                .tag("step", step)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
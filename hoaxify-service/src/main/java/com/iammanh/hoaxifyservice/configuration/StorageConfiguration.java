@@ -0,0 +1,48 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import com.iammanh.hoaxifyservice.file.FileStorage;
+import com.iammanh.hoaxifyservice.file.LocalFileStorage;
+import com.iammanh.hoaxifyservice.file.S3FileStorage;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Selects where uploads are kept with {@code hoaxify.storage}: {@code local} keeps them
+ * under {@code hoaxify.upload-path}, {@code s3} in {@code hoaxify.s3-bucket}. Without
+ * {@code hoaxify.s3-endpoint} and {@code hoaxify.s3-access-key} the AWS defaults are used,
+ * a MinIO server needs both and {@code hoaxify.s3-path-style-access=true}.
+ */
+@Configuration
+public class StorageConfiguration {
+
+    @Bean
+    public FileStorage fileStorage(AppConfiguration appConfiguration) throws IOException {
+        if (appConfiguration.getStorage() == AppConfiguration.StorageType.S3)
+            return new S3FileStorage(appConfiguration, s3Client(appConfiguration));
+        return new LocalFileStorage(Paths.get(appConfiguration.getUploadPath()));
+    }
+
+    private static S3Client s3Client(AppConfiguration appConfiguration) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(appConfiguration.getS3Region()))
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(appConfiguration.isS3PathStyleAccess())
+                        .build());
+        if (appConfiguration.getS3Endpoint() != null)
+            builder.endpointOverride(URI.create(appConfiguration.getS3Endpoint()));
+        if (appConfiguration.getS3AccessKey() != null)
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(appConfiguration.getS3AccessKey(), appConfiguration.getS3SecretKey())));
+        return builder.build();
+    }
+}
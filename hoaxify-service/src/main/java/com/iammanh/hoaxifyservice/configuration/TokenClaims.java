@@ -0,0 +1,22 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import com.iammanh.hoaxifyservice.user.User;
+import lombok.Value;
+
+@Value
+public class TokenClaims {
+    public enum Type {ACCESS, REFRESH}
+
+    private Type type;
+    private long userId;
+    private long expiresAt;
+    private String id;
+    private String username;
+
+    public User toPrincipal() {
+        User user = new User();
+        user.setId(userId);
+        user.setUsername(username);
+        return user;
+    }
+}
@@ -0,0 +1,125 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import com.iammanh.hoaxifyservice.user.User;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues and verifies compact HMAC-SHA256 signed tokens of the form
+ * {@code base64url(type:userId:expiresAt:id:username).base64url(signature)}.
+ * <p>
+ * Verification needs neither the database nor the password encoder, only the signature,
+ * the expiry and a lookup in the in-memory revocation list. The revocation list and,
+ * unless {@code hoaxify.token-secret} is set, the signing key live in this process only.
+ */
+@Service
+public class TokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final AppConfiguration appConfiguration;
+    private final SecretKeySpec secretKey;
+    private final ThreadLocal<Mac> mac;
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    public TokenService(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+        this.secretKey = new SecretKeySpec(secret(appConfiguration.getTokenSecret()), HMAC_ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::createMac);
+    }
+
+    public String createAccessToken(User user) {
+        return create(TokenClaims.Type.ACCESS, user, appConfiguration.getAccessTokenTtl());
+    }
+
+    public String createRefreshToken(User user) {
+        return create(TokenClaims.Type.REFRESH, user, appConfiguration.getRefreshTokenTtl());
+    }
+
+    public Optional<TokenClaims> verify(String token, TokenClaims.Type expectedType) {
+        if (token == null)
+            return Optional.empty();
+        int separator = token.indexOf('.');
+        if (separator < 0)
+            return Optional.empty();
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, separator));
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature))
+                return Optional.empty();
+
+            String[] parts = new String(payload, StandardCharsets.UTF_8).split(":", 5);
+            TokenClaims claims = new TokenClaims(
+                    TokenClaims.Type.valueOf(parts[0]),
+                    Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2]),
+                    parts[3],
+                    parts[4]
+            );
+            if (claims.getType() != expectedType
+                    || claims.getExpiresAt() <= System.currentTimeMillis()
+                    || revokedTokens.containsKey(claims.getId()))
+                return Optional.empty();
+            return Optional.of(claims);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return {@code false} when the token had already been revoked
+     */
+    public boolean revoke(TokenClaims claims) {
+        return revokedTokens.putIfAbsent(claims.getId(), claims.getExpiresAt()) == null;
+    }
+
+    @Scheduled(fixedRate = 60 * 1000L)
+    public void purgeExpiredRevocations() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private String create(TokenClaims.Type type, User user, long ttl) {
+        long expiresAt = System.currentTimeMillis() + ttl;
+        String id = UUID.randomUUID().toString().replaceAll("-", "");
+        byte[] payload = String.join(":", type.name(), String.valueOf(user.getId()), String.valueOf(expiresAt), id, user.getUsername())
+                .getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    private byte[] sign(byte[] payload) {
+        return mac.get().doFinal(payload);
+    }
+
+    private static byte[] secret(String configuredSecret) {
+        if (configuredSecret != null && !configuredSecret.isEmpty())
+            return configuredSecret.getBytes(StandardCharsets.UTF_8);
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+            instance.init(secretKey);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.iammanh.hoaxifyservice.file;
+
+import com.iammanh.hoaxifyservice.user.User;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A file uploaded in chunks ahead of the hoax it is attached to. {@code name} is set once
+ * all {@code size} bytes are uploaded and the file is stored.
+ */
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_file_attachment_timestamp", columnList = "timestamp"))
+public class FileAttachment {
+    @Id
+    @GeneratedValue
+    private long id;
+
+    /**
+     * When the upload was started or last written to.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date timestamp;
+
+    private String name;
+
+    private String fileType;
+
+    private long size;
+
+    private long uploadedSize;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User user;
+
+    public boolean isComplete() {
+        return name != null;
+    }
+}
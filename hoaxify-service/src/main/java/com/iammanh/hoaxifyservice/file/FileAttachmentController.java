@@ -0,0 +1,62 @@
+package com.iammanh.hoaxifyservice.file;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import com.iammanh.hoaxifyservice.file.vm.UploadRequestVM;
+import com.iammanh.hoaxifyservice.file.vm.UploadVM;
+import com.iammanh.hoaxifyservice.shared.CurrentUser;
+import com.iammanh.hoaxifyservice.user.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Chunked attachment uploads: {@code POST /attachments} with the file size starts one,
+ * every {@code PUT /attachments/{id}} sends the chunk starting at its {@code Upload-Offset}
+ * header, and {@code GET /attachments/{id}} tells where to resume.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1")
+public class FileAttachmentController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private final FileAttachmentService fileAttachmentService;
+    private final AppConfiguration appConfiguration;
+
+    @PostMapping("/attachments")
+    public ResponseEntity<UploadVM> startUpload(@Valid @RequestBody UploadRequestVM uploadRequest, @CurrentUser User loggedInUser) {
+        FileAttachment attachment = fileAttachmentService.startUpload(uploadRequest.getSize(), loggedInUser);
+        return ResponseEntity
+                .created(URI.create("/api/v1/attachments/" + attachment.getId()))
+                .body(toVM(attachment));
+    }
+
+    @GetMapping("/attachments/{id:[0-9]+}")
+    public ResponseEntity<UploadVM> getUpload(@PathVariable long id, @CurrentUser User loggedInUser) {
+        return ResponseEntity.ok(toVM(fileAttachmentService.getUpload(id, loggedInUser)));
+    }
+
+    @PutMapping(value = "/attachments/{id:[0-9]+}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadVM> writeChunk(@PathVariable long id, @RequestHeader(UPLOAD_OFFSET) long offset,
+                                               HttpServletRequest request, @CurrentUser User loggedInUser) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length < 0)
+            throw new BadRequestException("Chunks need a Content-Length");
+        try (InputStream chunk = request.getInputStream()) {
+            return ResponseEntity.ok(toVM(fileAttachmentService.writeChunk(id, offset, length, chunk, loggedInUser)));
+        }
+    }
+
+    private UploadVM toVM(FileAttachment attachment) {
+        return new UploadVM(attachment, appConfiguration.getAttachmentChunkSize());
+    }
+}
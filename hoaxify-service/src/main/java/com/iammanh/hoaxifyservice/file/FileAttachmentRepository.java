@@ -0,0 +1,39 @@
+package com.iammanh.hoaxifyservice.file;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface FileAttachmentRepository extends JpaRepository<FileAttachment, Long> {
+
+    /**
+     * Uploads are read to append to them, so from the primary database rather than in
+     * Spring Data's default read-only transaction.
+     */
+    @Override
+    @Transactional
+    Optional<FileAttachment> findById(Long id);
+
+    @Query("select a from FileAttachment a where a.timestamp < :cutoff and not exists (select h.id from Hoax h where h.attachment = a)")
+    List<FileAttachment> findOrphansNotTouchedSince(@Param("cutoff") Date cutoff);
+
+    /**
+     * Deletes the attachment only if it is still an orphan at the time of the delete, a hoax
+     * may have linked it since it was listed by {@link #findOrphansNotTouchedSince}.
+     *
+     * @return 1 when the row was deleted, 0 when it is linked, was written again or is gone
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from FileAttachment a where a.id = :id and a.timestamp < :cutoff and not exists (select h.id from Hoax h where h.attachment.id = :id)")
+    int deleteOrphan(@Param("id") long id, @Param("cutoff") Date cutoff);
+
+    @Query("select count(h) > 0 from Hoax h where h.attachment.id = :id")
+    boolean isAttached(@Param("id") long id);
+}
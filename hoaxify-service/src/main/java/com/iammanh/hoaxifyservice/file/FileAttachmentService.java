@@ -0,0 +1,204 @@
+package com.iammanh.hoaxifyservice.file;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import com.iammanh.hoaxifyservice.error.ConflictException;
+import com.iammanh.hoaxifyservice.error.NotFoundException;
+import com.iammanh.hoaxifyservice.user.User;
+import org.apache.tika.mime.MimeTypeException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hoax attachments, uploaded before the hoax is posted in chunks of
+ * {@code hoaxify.attachment-chunk-size} bytes.
+ * <p>
+ * Every chunk names the offset it starts at, which must be the number of bytes uploaded so
+ * far. A chunk is streamed straight into a part file in the temp folder and only counts once
+ * all of it arrived, so after a disconnect the client asks for the upload and resends from
+ * its offset. The complete file is handed to {@link FileStorage}.
+ * <p>
+ * Attachments not linked to a hoax within {@code hoaxify.attachment-orphan-ttl} of their last
+ * write are removed by {@link #removeOrphans()}.
+ */
+@Service
+public class FileAttachmentService {
+
+    private final FileAttachmentRepository fileAttachmentRepository;
+    private final FileStorage fileStorage;
+    private final FileService fileService;
+    private final AppConfiguration appConfiguration;
+    private final Map<Long, Boolean> uploadsInProgress = new ConcurrentHashMap<>();
+
+    public FileAttachmentService(FileAttachmentRepository fileAttachmentRepository, FileStorage fileStorage,
+                                 FileService fileService, AppConfiguration appConfiguration) {
+        this.fileAttachmentRepository = fileAttachmentRepository;
+        this.fileStorage = fileStorage;
+        this.fileService = fileService;
+        this.appConfiguration = appConfiguration;
+    }
+
+    public FileAttachment startUpload(long size, User user) {
+        if (size > appConfiguration.getAttachmentMaxSize())
+            throw new BadRequestException("Attachments can be at most " + appConfiguration.getAttachmentMaxSize() + " bytes");
+        FileAttachment attachment = new FileAttachment();
+        attachment.setSize(size);
+        attachment.setUser(user);
+        attachment.setTimestamp(new Date());
+        return fileAttachmentRepository.save(attachment);
+    }
+
+    public FileAttachment getUpload(long id, User user) {
+        return fileAttachmentRepository.findById(id)
+                .filter(attachment -> attachment.getUser().getId() == user.getId())
+                .orElseThrow(() -> new NotFoundException("Upload not found"));
+    }
+
+    /**
+     * Appends one chunk, {@code chunk} is read up to {@code length} bytes.
+     *
+     * @throws ConflictException when {@code offset} is not where the upload stands or another chunk of it is being written
+     */
+    public FileAttachment writeChunk(long id, long offset, long length, InputStream chunk, User user) throws IOException {
+        if (uploadsInProgress.putIfAbsent(id, Boolean.TRUE) != null)
+            throw new ConflictException("Another chunk of this upload is being written");
+        try {
+            FileAttachment attachment = getUpload(id, user);
+            if (offset != attachment.getUploadedSize())
+                throw new ConflictException("Upload is at offset " + attachment.getUploadedSize());
+            long expected = Math.min(appConfiguration.getAttachmentChunkSize(), attachment.getSize() - offset);
+            if (attachment.isComplete() || length != expected)
+                throw new BadRequestException("Expected a chunk of " + expected + " bytes");
+
+            Path part = partPath(id);
+            long written = 0;
+            try (ReadableByteChannel source = Channels.newChannel(chunk);
+                 FileChannel target = openPart(part, offset)) {
+                long transferred;
+                while (written < expected && (transferred = target.transferFrom(source, offset + written, expected - written)) > 0)
+                    written += transferred;
+            }
+            if (written < expected)
+                throw new BadRequestException("Chunk ended after " + written + " of " + expected + " bytes");
+
+            if (offset == 0)
+                attachment.setFileType(detectType(part));
+            attachment.setUploadedSize(offset + written);
+            attachment.setTimestamp(new Date());
+            if (attachment.getUploadedSize() == attachment.getSize())
+                store(attachment, part);
+            FileAttachment saved = fileAttachmentRepository.save(attachment);
+            // kept until the upload is recorded as complete, so the last chunk can be resent
+            if (saved.isComplete())
+                Files.deleteIfExists(part);
+            return saved;
+        } finally {
+            uploadsInProgress.remove(id);
+        }
+    }
+
+    /**
+     * @return the attachment to link to a new hoax of {@code user}
+     * @throws BadRequestException unless it is a complete upload of the user that no hoax uses yet
+     */
+    public FileAttachment getForHoax(long id, User user) {
+        FileAttachment attachment = fileAttachmentRepository.findById(id)
+                .filter(candidate -> candidate.getUser().getId() == user.getId())
+                .filter(FileAttachment::isComplete)
+                .orElseThrow(() -> new BadRequestException("Attachment is not a complete upload"));
+        if (fileAttachmentRepository.isAttached(id))
+            throw new BadRequestException("Attachment is already used by another hoax");
+        return attachment;
+    }
+
+    @Scheduled(fixedDelayString = "${hoaxify.attachment-sweep-interval:600000}")
+    public void removeOrphans() {
+        Date cutoff = new Date(System.currentTimeMillis() - appConfiguration.getAttachmentOrphanTtl());
+        List<FileAttachment> orphans = fileAttachmentRepository.findOrphansNotTouchedSince(cutoff);
+        for (FileAttachment orphan : orphans) {
+            if (uploadsInProgress.containsKey(orphan.getId()))
+                continue;
+            // the row goes first and only while still an orphan, so a hoax never points at a deleted file
+            try {
+                if (fileAttachmentRepository.deleteOrphan(orphan.getId(), cutoff) == 0)
+                    continue;
+                Files.deleteIfExists(partPath(orphan.getId()));
+                if (orphan.isComplete())
+                    fileStorage.delete(attachmentKey(orphan.getName()));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private String detectType(Path part) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FileService.DETECTION_HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) > 0) {
+            }
+        }
+        String type = fileService.detectType(Arrays.copyOf(header.array(), header.position()));
+        if (!isSupportedAttachment(type)) {
+            Files.deleteIfExists(part);
+            throw new BadRequestException("Only PNG, JPG and GIF files are allowed");
+        }
+        return type;
+    }
+
+    private void store(FileAttachment attachment, Path part) throws IOException {
+        String name;
+        try {
+            name = UUID.randomUUID().toString().replaceAll("-", "") + fileService.extensionOf(attachment.getFileType());
+        } catch (MimeTypeException e) {
+            throw new IllegalStateException(e);
+        }
+        fileStorage.put(attachmentKey(name), part);
+        attachment.setName(name);
+    }
+
+    /**
+     * Only the first chunk creates the part file. A later chunk whose part is gone would
+     * otherwise be written into a new, zero filled file that gets stored as the attachment.
+     *
+     * @throws ConflictException when the part of an upload past its first chunk is missing
+     */
+    private FileChannel openPart(Path part, long offset) throws IOException {
+        if (offset == 0)
+            return FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            return FileChannel.open(part, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            throw new ConflictException("The uploaded data is gone, start a new upload");
+        }
+    }
+
+    private boolean isSupportedAttachment(String type) {
+        return type.equalsIgnoreCase("image/png") || type.equalsIgnoreCase("image/jpeg") || type.equalsIgnoreCase("image/gif");
+    }
+
+    private String attachmentKey(String name) {
+        return appConfiguration.getAttachmentsFolder() + "/" + name;
+    }
+
+    private Path partPath(long id) {
+        return Paths.get(appConfiguration.getFullTempPath(), "attachment-" + id + ".part");
+    }
+}
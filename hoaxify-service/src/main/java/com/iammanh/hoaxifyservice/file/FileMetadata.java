@@ -0,0 +1,12 @@
+package com.iammanh.hoaxifyservice.file;
+
+import lombok.Value;
+
+/**
+ * What {@link FileStorage#stat} knows about a stored file without reading it.
+ */
+@Value
+public class FileMetadata {
+    long size;
+    long lastModified;
+}
@@ -1,60 +1,519 @@
 package com.iammanh.hoaxifyservice.file;
 
 import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
-import org.apache.commons.io.FileUtils;
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import com.iammanh.hoaxifyservice.error.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.tika.Tika;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MimeType;
 import org.apache.tika.mime.MimeTypeException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.UUID;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Stores profile images in the configured {@link FileStorage}.
+ * <p>
+ * Images are content addressed: the SHA-256 of the bytes is the file name, so identical
+ * uploads are stored once and a name always denotes the same bytes. Every user pointing
+ * at an image holds a reference on it in {@link StoredImage}, the file is deleted when
+ * the last reference is released. Reference counts are changed with single conditional
+ * statements, so concurrent uploads and deletes on any number of instances never lose a
+ * reference. The file operations depending on them are serialised per name in this process.
+ * <p>
+ * The image name is decided on the request thread, the file itself is written and old
+ * images are deleted on a small bounded pool. When its queue is full new uploads are
+ * refused with a 503 instead of piling up behind slow disk writes.
+ * <p>
+ * Every stored image also gets scaled down copies for the sizes in
+ * {@code hoaxify.profile-image-variants}, see {@link #variantName(String, int)}.
+ */
 @Service
 public class FileService {
+
+    /**
+     * PNG and JPEG are recognised by their first bytes, type detection never needs more than this.
+     */
+    public static final int DETECTION_HEADER_SIZE = 4096;
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+    private static final int LOCK_STRIPES = 64;
+
     private final AppConfiguration appConfiguration;
+    private final StoredImageRepository storedImageRepository;
+    private final FileStorage fileStorage;
+    private final Path tempFolder;
     private final Tika tika;
     private final TikaConfig tikaConfig;
+    private final ThreadPoolExecutor imageWorker;
+    private final ImageResizer imageResizer = new ImageResizer();
+    private final Lock[] imageLocks = new Lock[LOCK_STRIPES];
+    private final Timer detectionTimer;
+    private final Timer writeTimer;
 
-    public FileService(AppConfiguration appConfiguration) {
+    public FileService(AppConfiguration appConfiguration, StoredImageRepository storedImageRepository, FileStorage fileStorage,
+                       MeterRegistry meterRegistry) {
         this.appConfiguration = appConfiguration;
+        this.storedImageRepository = storedImageRepository;
+        this.fileStorage = fileStorage;
+        this.tempFolder = Paths.get(appConfiguration.getFullTempPath());
         this.tika = new Tika();
         this.tikaConfig = TikaConfig.getDefaultConfig();
+        this.imageWorker = new ThreadPoolExecutor(
+                appConfiguration.getImageWorkerThreads(),
+                appConfiguration.getImageWorkerThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(appConfiguration.getImageQueueCapacity()),
+                new CustomizableThreadFactory("image-worker-")
+        );
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            imageLocks[i] = new ReentrantLock();
+        this.detectionTimer = Timer.builder("hoaxify.files.detection")
+                .description("Tika type detection of uploaded bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("hoaxify.files.write")
+                .description("Writing a profile image and its variants to storage")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a reference on the image for the caller.
+     *
+     * @return the name the image will be stored under, the file appears once the write queued here completes
+     */
+    public String saveProfileImage(String base64Image) throws MimeTypeException {
+        byte[] decodedBytes;
+        try {
+            decodedBytes = Base64.getDecoder().decode(base64Image);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Image is not valid base64");
+        }
+
+        checkDimensions(decodedBytes);
+        MessageDigest digest = sha256();
+        digest.update(decodedBytes);
+        String imageFileName = contentName(digest, detectType(decodedBytes));
+        Lock lock = lockFor(imageFileName);
+        lock.lock();
+        try {
+            acquire(imageFileName);
+            if (isStored(imageFileName))
+                return imageFileName;
+            try {
+                imageWorker.execute(() -> {
+                    try {
+                        Path temp = Files.createTempFile(tempFolder, "upload-", ".tmp");
+                        Files.write(temp, decodedBytes);
+                        publish(temp, imageFileName);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                release(imageFileName);
+                throw new ServiceUnavailableException("Too many images are being processed, try again later");
+            }
+            return imageFileName;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public String saveProfileImage(String base64Image) throws IOException, MimeTypeException {
-        String imageName = UUID.randomUUID().toString().replaceAll("-", "");
+    /**
+     * Streams an uploaded image into storage through a local temp file, only the first
+     * {@link #DETECTION_HEADER_SIZE} bytes are held in memory to check its type. Takes a
+     * reference on the image for the caller.
+     *
+     * @return the name the image will be stored under, the file appears once its variants are created
+     * @throws BadRequestException when the upload is not a PNG or JPEG image
+     */
+    public String saveProfileImage(InputStream image) throws IOException, MimeTypeException {
+        Path temp = Files.createTempFile(tempFolder, "upload-", ".tmp");
+        boolean queued = false;
+        try {
+            MessageDigest digest = sha256();
+            String type;
+            try (ReadableByteChannel source = new DigestingChannel(Channels.newChannel(image), digest);
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(DETECTION_HEADER_SIZE);
+                while (header.hasRemaining() && source.read(header) != -1) {
+                }
+                header.flip();
+                type = detectType(Arrays.copyOf(header.array(), header.limit()));
+                if (!isSupportedProfileImage(type))
+                    throw new BadRequestException("Only PNG and JPG files are allowed");
+
+                while (header.hasRemaining())
+                    target.write(header);
+                long position = target.position();
+                long transferred;
+                while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0)
+                    position += transferred;
+            }
 
-        byte[] decodedBytes = Base64.getDecoder().decode(base64Image);
-        String imageFileName = imageName + getExtension(decodedBytes);
-        File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + imageFileName);
-        FileUtils.writeByteArrayToFile(target, decodedBytes);
-        return imageFileName;
+            checkDimensions(temp);
+            String imageFileName = contentName(digest, type);
+            Lock lock = lockFor(imageFileName);
+            lock.lock();
+            try {
+                acquire(imageFileName);
+                if (isStored(imageFileName))
+                    return imageFileName;
+                try {
+                    imageWorker.execute(() -> {
+                        try {
+                            publish(temp, imageFileName);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    });
+                    queued = true;
+                } catch (RejectedExecutionException e) {
+                    // store the original right away, requests for a variant fall back to it
+                    fileStorage.put(profileKey(imageFileName), temp);
+                }
+                return imageFileName;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            if (!queued)
+                Files.deleteIfExists(temp);
+        }
+    }
+
+    public boolean isSupportedProfileImage(String type) {
+        return type.equalsIgnoreCase("image/png") || type.equalsIgnoreCase("image/jpeg");
     }
 
     public String detectType(byte[] fileArray) {
-        return tika.detect(fileArray);
+        return detectionTimer.record(() -> tika.detect(fileArray));
     }
 
     public String getExtension(byte[] fileArray) throws IOException, MimeTypeException {
-        MediaType mediaType = tikaConfig.getMimeRepository().detect(new ByteArrayInputStream(fileArray), new Metadata());
-        MimeType mimeType = tikaConfig.getMimeRepository().forName(mediaType.toString());
-        return mimeType.getExtension();
+        long start = System.nanoTime();
+        MediaType mediaType;
+        try {
+            mediaType = tikaConfig.getMimeRepository().detect(new ByteArrayInputStream(fileArray), new Metadata());
+        } finally {
+            detectionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return extensionOf(mediaType.toString());
     }
 
+    /**
+     * Releases the caller's reference on the image, the image and its variants are deleted
+     * in the background once nobody references it anymore.
+     */
     public void deleteProfileImage(String image) {
+        if (image == null)
+            return;
+        Lock lock = lockFor(image);
+        lock.lock();
+        try {
+            if (!release(image))
+                return;
+        } finally {
+            lock.unlock();
+        }
+
+        Runnable deletion = () -> {
+            lock.lock();
+            try {
+                if (isReferenced(image))
+                    return;
+                delete(profileKey(image));
+                deleteVariants(image);
+            } finally {
+                lock.unlock();
+            }
+        };
+        try {
+            imageWorker.execute(deletion);
+        } catch (RejectedExecutionException e) {
+            deletion.run();
+        }
+    }
+
+    /**
+     * @return the storage key of a profile image, images are stored under the profile folder
+     */
+    public String profileKey(String image) {
+        return appConfiguration.getProfileImagesFolder() + "/" + image;
+    }
+
+    /**
+     * @return the file name of the variant of {@code image} scaled to fit {@code size} pixels, {@code abc.png} becomes {@code abc-32.png}
+     */
+    public static String variantName(String image, int size) {
+        int extension = image.lastIndexOf('.');
+        if (extension < 0 || extension < image.lastIndexOf('/'))
+            return image + "-" + size;
+        return image.substring(0, extension) + "-" + size + image.substring(extension);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        imageWorker.shutdown();
+        imageWorker.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void acquire(String image) {
+        if (storedImageRepository.addReference(image) > 0)
+            return;
+        try {
+            storedImageRepository.insertFirstReference(image);
+        } catch (DataIntegrityViolationException e) {
+            // another instance inserted the first reference in the meantime
+            storedImageRepository.addReference(image);
+        }
+    }
+
+    /**
+     * @return {@code true} when the image is not referenced anymore, images stored before
+     * reference counting are not tracked and count as unreferenced
+     */
+    private boolean release(String image) {
+        while (true) {
+            if (storedImageRepository.releaseSharedReference(image) > 0)
+                return false;
+            if (storedImageRepository.releaseLastReference(image) > 0)
+                return true;
+            // neither matched: untracked, or acquired again by someone else between the two
+            if (!storedImageRepository.existsById(image))
+                return true;
+        }
+    }
+
+    private boolean isReferenced(String image) {
+        return storedImageRepository.existsById(image);
+    }
+
+    private boolean isStored(String image) {
+        try {
+            return fileStorage.exists(profileKey(image));
+        } catch (IOException e) {
+            // storing it again is harmless, its name stands for its content
+            return false;
+        }
+    }
+
+    private Lock lockFor(String image) {
+        return imageLocks[Math.floorMod(image.hashCode(), LOCK_STRIPES)];
+    }
+
+    private String contentName(MessageDigest digest, String mediaType) throws MimeTypeException {
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest())
+            name.append(String.format("%02x", b));
+        return name.append(extensionOf(mediaType)).toString();
+    }
+
+    public String extensionOf(String mediaType) throws MimeTypeException {
+        MimeType mimeType = tikaConfig.getMimeRepository().forName(mediaType);
+        return mimeType.getExtension();
+    }
+
+    /**
+     * Creates the variants from the written temp file, then stores it as {@code image}. Once
+     * an image can be served, so can its variants, and it is never served half written. When
+     * the last reference was released in the meantime nothing is kept.
+     */
+    private void publish(Path temp, String image) throws IOException {
+        long start = System.nanoTime();
+        try {
+            createVariants(temp, image);
+            Lock lock = lockFor(image);
+            lock.lock();
+            try {
+                if (isReferenced(image))
+                    fileStorage.put(profileKey(image), temp);
+                else
+                    deleteVariants(image);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @throws BadRequestException when the image header cannot be read or declares more
+     *                             than {@code hoaxify.profile-image-max-pixels} pixels
+     */
+    private void checkDimensions(byte[] image) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            checkDimensions(input);
+        } catch (IOException e) {
+            throw new BadRequestException("Image could not be read");
+        }
+    }
+
+    /**
+     * @throws BadRequestException when the image header cannot be read or declares more
+     *                             than {@code hoaxify.profile-image-max-pixels} pixels
+     */
+    private void checkDimensions(Path image) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.toFile())) {
+            checkDimensions(input);
+        } catch (IOException e) {
+            throw new BadRequestException("Image could not be read");
+        }
+    }
+
+    private void checkDimensions(ImageInputStream input) throws IOException {
+        long pixels = pixelCount(input);
+        if (pixels < 0)
+            throw new BadRequestException("Image could not be read");
+        if (pixels > appConfiguration.getProfileImageMaxPixels())
+            throw new BadRequestException("Image must not have more than " + appConfiguration.getProfileImageMaxPixels() + " pixels");
+    }
+
+    /**
+     * Reads the width and height from the image header only, so a small file declaring huge
+     * dimensions is turned away before anything allocates its pixels.
+     *
+     * @return the number of pixels, -1 when no reader understands the image
+     */
+    private static long pixelCount(ImageInputStream input) throws IOException {
+        if (input == null)
+            return -1;
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext())
+            return -1;
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            return (long) reader.getWidth(0) * reader.getHeight(0);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Stores one scaled copy of {@code source} per configured variant size that is smaller
+     * than the image.
+     */
+    private void createVariants(Path source, String imageName) {
         try {
-            Files.deleteIfExists(Paths.get(appConfiguration.getFullProfileImagesPath() + "/" + image));
+            // images stored before the pixel limit was checked are served without variants
+            try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+                if (pixelCount(input) > appConfiguration.getProfileImageMaxPixels())
+                    return;
+            }
+            BufferedImage image = ImageIO.read(source.toFile());
+            if (image == null)
+                return;
+            String formatName = imageName.endsWith(".png") ? "png" : "jpeg";
+            for (int size : appConfiguration.getProfileImageVariants()) {
+                if (Math.max(image.getWidth(), image.getHeight()) <= size)
+                    continue;
+                Path temp = Files.createTempFile(tempFolder, "variant-", ".tmp");
+                try {
+                    try (OutputStream out = Files.newOutputStream(temp)) {
+                        imageResizer.write(imageResizer.resize(image, size), formatName, out);
+                    }
+                    fileStorage.put(profileKey(variantName(imageName, size)), temp);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    private void deleteVariants(String imageName) {
+        for (int size : appConfiguration.getProfileImageVariants())
+            delete(profileKey(variantName(imageName, size)));
+    }
+
+    private void delete(String key) {
+        try {
+            fileStorage.delete(key);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Feeds every byte read through it into a digest.
+     */
+    private static final class DigestingChannel implements ReadableByteChannel {
+
+        private final ReadableByteChannel source;
+        private final MessageDigest digest;
+
+        DigestingChannel(ReadableByteChannel source, MessageDigest digest) {
+            this.source = source;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int start = dst.position();
+            int read = source.read(dst);
+            if (read > 0) {
+                ByteBuffer bytes = dst.duplicate();
+                bytes.flip();
+                bytes.position(start);
+                digest.update(bytes);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package com.iammanh.hoaxifyservice.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where uploaded files are kept. Keys are relative paths such as {@code profile/abc.png}.
+ * <p>
+ * Files are prepared in a local temp file and handed over with {@link #put}, readers get
+ * a local file through {@link #get}, so the rest of the application can keep using file
+ * channels and sendfile whatever the backend. {@link #stat} answers without fetching the
+ * content, for readers that may not need it.
+ */
+public interface FileStorage {
+
+    /**
+     * Stores the content of {@code source} under {@code key}, replacing what was there. The
+     * source file may be moved away, callers only delete it if it is still there afterwards.
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * @return a local file with the content stored under {@code key}, the stored file itself or a cached copy of it
+     */
+    Optional<Path> get(String key) throws IOException;
+
+    /**
+     * @return the size and last modification of the content stored under {@code key}, empty when nothing is
+     */
+    Optional<FileMetadata> stat(String key) throws IOException;
+
+    /**
+     * Reads the stored content without keeping a local copy.
+     *
+     * @throws java.nio.file.NoSuchFileException when nothing is stored under {@code key}
+     */
+    InputStream stream(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+}
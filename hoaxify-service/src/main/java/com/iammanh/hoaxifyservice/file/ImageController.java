@@ -0,0 +1,210 @@
+package com.iammanh.hoaxifyservice.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves the uploaded images under {@code /images/{folder}/{image}}.
+ * <p>
+ * Image names are derived from their content, so an image found under a name never
+ * changes. Responses are cacheable for good with the served file name as strong ETag, and
+ * conditional requests and HEAD requests are answered from {@link FileStorage#stat} without
+ * fetching the image. Bodies are read from the local file {@link FileStorage#get} provides.
+ * Small images are served from an in-memory LRU of {@code hoaxify.image-cache-size} bytes,
+ * larger ones are handed to the connector's sendfile when it supports it and streamed with
+ * {@link FileChannel#transferTo} otherwise. Single byte ranges are supported.
+ * <p>
+ * {@code ?size=n} selects the smallest stored variant at least {@code n} pixels large,
+ * falling back to the original when there is none.
+ */
+@Controller
+public class ImageController {
+
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final AppConfiguration appConfiguration;
+    private final FileStorage fileStorage;
+    private final Cache<Path, CachedImage> hotImages;
+
+    public ImageController(AppConfiguration appConfiguration, FileStorage fileStorage, MeterRegistry meterRegistry) {
+        this.appConfiguration = appConfiguration;
+        this.fileStorage = fileStorage;
+        this.hotImages = Caffeine.newBuilder()
+                .maximumWeight(appConfiguration.getImageCacheSize())
+                .weigher((Path path, CachedImage image) -> image.getBytes().length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, hotImages, "images");
+    }
+
+    @RequestMapping(value = "/images/{folder}/{image:.+}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void getImage(@PathVariable String folder, @PathVariable String image, @RequestParam(required = false) String size,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!isServed(folder, image)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Integer variant = variantFor(size);
+        String key = folder + "/" + (variant == null ? image : FileService.variantName(image, variant));
+        Optional<FileMetadata> metadata = fileStorage.stat(key);
+        if (!metadata.isPresent() && variant != null) {
+            key = folder + "/" + image;
+            metadata = fileStorage.stat(key);
+        }
+        if (!metadata.isPresent()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        long lastModified = metadata.get().getLastModified();
+        long length = metadata.get().getSize();
+        String etag = "\"" + fileName + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified))
+            return;
+
+        response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && length > 0 && ifRangeMatches(request, etag, lastModified)) {
+            HttpRange range;
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                range = ranges.size() == 1 ? ranges.get(0) : null;
+            } catch (IllegalArgumentException e) {
+                range = null;
+            }
+            // several ranges are answered with the whole image, which is allowed and never larger for avatars
+            if (range != null) {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        response.setContentLengthLong(end - start + 1);
+        if (request.getMethod().equals(RequestMethod.HEAD.name()) || length == 0)
+            return;
+
+        try {
+            // only now that a body is sent is the content fetched from storage
+            Optional<Path> file = fileStorage.get(key);
+            if (!file.isPresent())
+                throw new NoSuchFileException(key);
+            write(file.get(), lastModified, length, start, end, request, response);
+        } catch (NoSuchFileException e) {
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        }
+    }
+
+    private void write(Path file, long lastModified, long length, long start, long end,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (length <= appConfiguration.getImageCacheMaxFileSize()) {
+            byte[] bytes = read(file, lastModified);
+            response.getOutputStream().write(bytes, (int) start, (int) (end - start + 1));
+        } else if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                long sent;
+                while (position <= end && (sent = channel.transferTo(position, end + 1 - position, out)) > 0)
+                    position += sent;
+            }
+        }
+    }
+
+    private byte[] read(Path file, long lastModified) throws IOException {
+        CachedImage cached = hotImages.getIfPresent(file);
+        if (cached != null && cached.getLastModified() == lastModified)
+            return cached.getBytes();
+        byte[] bytes = Files.readAllBytes(file);
+        hotImages.put(file, new CachedImage(lastModified, bytes));
+        return bytes;
+    }
+
+    private boolean isServed(String folder, String image) {
+        if (!folder.equals(appConfiguration.getProfileImagesFolder()) && !folder.equals(appConfiguration.getAttachmentsFolder()))
+            return false;
+        return !image.equals("..") && !image.equals(".");
+    }
+
+    private Integer variantFor(String size) {
+        if (size == null)
+            return null;
+        int requested;
+        try {
+            requested = Integer.parseInt(size);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return appConfiguration.getProfileImageVariants().stream()
+                .filter(variant -> variant >= requested)
+                .min(Integer::compare)
+                .orElse(null);
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.equals(etag))
+            return true;
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Value
+    private static class CachedImage {
+        long lastModified;
+        byte[] bytes;
+    }
+}
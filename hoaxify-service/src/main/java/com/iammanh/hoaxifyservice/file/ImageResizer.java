@@ -0,0 +1,66 @@
+package com.iammanh.hoaxifyservice.file;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Scales images down to fit a square box, keeping their aspect ratio.
+ * <p>
+ * Large reductions are done in successive halving steps with bilinear interpolation,
+ * which is close to area averaging in quality at a fraction of its cost.
+ */
+public class ImageResizer {
+
+    public BufferedImage resize(BufferedImage source, int size) {
+        int largestSide = Math.max(source.getWidth(), source.getHeight());
+        if (largestSide <= size)
+            return source;
+
+        double scale = (double) size / largestSide;
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = scale(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * @param formatName an ImageIO format name, {@code png} or {@code jpeg}
+     */
+    public void write(BufferedImage image, String formatName, OutputStream out) throws IOException {
+        BufferedImage output = image;
+        if (formatName.equals("jpeg") && image.getColorModel().hasAlpha())
+            output = scale(image, image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        if (!ImageIO.write(output, formatName, out))
+            throw new IOException("No image writer for " + formatName);
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, int height) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        return scale(source, width, height, type);
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
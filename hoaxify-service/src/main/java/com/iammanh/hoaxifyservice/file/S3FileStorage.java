@@ -0,0 +1,258 @@
+package com.iammanh.hoaxifyservice.file;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the files in an S3 compatible object store, such as AWS S3 or MinIO, under
+ * {@code hoaxify.s3-bucket}.
+ * <p>
+ * Files larger than {@code hoaxify.s3-part-size} are sent as a multipart upload with the
+ * parts uploaded in parallel. Objects read through {@link #get} are kept in a local cache
+ * folder of at most {@code hoaxify.storage-cache-size} bytes, least recently used objects
+ * are dropped first. The cache is emptied on startup. {@link #stat} answers from the cache
+ * or with a HEAD request, never by downloading the object.
+ */
+public class S3FileStorage implements FileStorage {
+
+    private static final int NOT_FOUND = 404;
+
+    private final S3Client s3;
+    private final String bucket;
+    private final long partSize;
+    private final ExecutorService partUploader;
+    private final Path cacheRoot;
+    private final Cache<String, FileMetadata> cachedObjects;
+
+    public S3FileStorage(AppConfiguration appConfiguration, S3Client s3) throws IOException {
+        this.s3 = s3;
+        this.bucket = appConfiguration.getS3Bucket();
+        this.partSize = appConfiguration.getS3PartSize();
+        this.partUploader = Executors.newFixedThreadPool(appConfiguration.getS3UploadThreads(), new CustomizableThreadFactory("s3-upload-"));
+        this.cacheRoot = Paths.get(appConfiguration.getFullCachePath()).toAbsolutePath().normalize();
+        FileUtils.deleteDirectory(cacheRoot.toFile());
+        Files.createDirectories(cacheRoot);
+        this.cachedObjects = Caffeine.newBuilder()
+                .maximumWeight(appConfiguration.getStorageCacheSize())
+                .weigher((String key, FileMetadata metadata) -> (int) Math.min(Integer.MAX_VALUE, metadata.getSize()))
+                .executor(Runnable::run)
+                .removalListener((String key, FileMetadata metadata, RemovalCause cause) -> {
+                    if (cause != RemovalCause.REPLACED)
+                        deleteCached(key);
+                })
+                .build();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        try {
+            if (size <= partSize)
+                s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).contentType(contentType(key)).build(),
+                        RequestBody.fromFile(source));
+            else
+                putMultipart(key, source, size);
+        } catch (SdkException e) {
+            throw new IOException("Could not store " + key, e);
+        }
+        cachedObjects.invalidate(key);
+    }
+
+    @Override
+    public Optional<Path> get(String key) throws IOException {
+        Path cached = cachePath(key);
+        if (cachedObjects.getIfPresent(key) != null && Files.isRegularFile(cached))
+            return Optional.of(cached);
+
+        Path temp = Files.createTempFile(cacheRoot, "download-", ".tmp");
+        GetObjectResponse response;
+        try {
+            // the SDK refuses to overwrite an existing file
+            Files.delete(temp);
+            response = s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build(), temp);
+            Files.createDirectories(cached.getParent());
+            Files.move(temp, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND)
+                return Optional.empty();
+            throw new IOException("Could not read " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + key, e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        cachedObjects.put(key, new FileMetadata(Files.size(cached), response.lastModified().toEpochMilli()));
+        return Optional.of(cached);
+    }
+
+    @Override
+    public Optional<FileMetadata> stat(String key) throws IOException {
+        FileMetadata cached = cachedObjects.getIfPresent(key);
+        if (cached != null && Files.isRegularFile(cachePath(key)))
+            return Optional.of(cached);
+        try {
+            HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+            return Optional.of(new FileMetadata(head.contentLength(), head.lastModified().toEpochMilli()));
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND)
+                return Optional.empty();
+            throw new IOException("Could not check " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Could not check " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream stream(String key) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND)
+                throw new NoSuchFileException(key);
+            throw new IOException("Could not read " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == NOT_FOUND)
+                return false;
+            throw new IOException("Could not check " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Could not check " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (SdkException e) {
+            throw new IOException("Could not delete " + key, e);
+        }
+        cachedObjects.invalidate(key);
+    }
+
+    public void close() {
+        partUploader.shutdown();
+        s3.close();
+    }
+
+    private void putMultipart(String key, Path source, long size) throws IOException {
+        String uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType(key))
+                .build()).uploadId();
+        List<Future<CompletedPart>> parts = new ArrayList<>();
+        try {
+            for (long offset = 0; offset < size; offset += partSize) {
+                int partNumber = parts.size() + 1;
+                long partOffset = offset;
+                int length = (int) Math.min(partSize, size - offset);
+                parts.add(partUploader.submit(() -> uploadPart(key, uploadId, partNumber, source, partOffset, length)));
+            }
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (Future<CompletedPart> part : parts)
+                completedParts.add(part.get());
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+        } catch (InterruptedException | ExecutionException | SdkException e) {
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            parts.forEach(part -> part.cancel(true));
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+            throw new IOException("Could not store " + key, e);
+        }
+    }
+
+    /**
+     * Parts are read into memory so the SDK can retry them, at most {@code hoaxify.s3-upload-threads}
+     * parts are in memory at once.
+     */
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, Path source, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+            }
+        }
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build();
+        String eTag = s3.uploadPart(request, RequestBody.fromBytes(buffer.array())).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+    }
+
+    private Path cachePath(String key) {
+        Path file = cacheRoot.resolve(key).normalize();
+        if (!file.startsWith(cacheRoot) || file.equals(cacheRoot))
+            throw new IllegalArgumentException("Invalid key " + key);
+        return file;
+    }
+
+    private void deleteCached(String key) {
+        try {
+            Files.deleteIfExists(cachePath(key));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String contentType(String key) {
+        return MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+}
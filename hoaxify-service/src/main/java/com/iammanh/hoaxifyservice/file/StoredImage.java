@@ -0,0 +1,22 @@
+package com.iammanh.hoaxifyservice.file;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * A stored image and the number of references on it.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredImage {
+    @Id
+    private String name;
+
+    private long refCount;
+}
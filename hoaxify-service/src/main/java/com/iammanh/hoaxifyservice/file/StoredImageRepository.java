@@ -0,0 +1,57 @@
+package com.iammanh.hoaxifyservice.file;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Reference counts are only changed by single conditional statements, so instances sharing
+ * the database never lose an update. Reads run in read-write transactions, which always go
+ * to the primary database, instead of Spring Data's read-only default.
+ */
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+    @Override
+    @Transactional
+    Optional<StoredImage> findById(String name);
+
+    @Override
+    @Transactional
+    boolean existsById(String name);
+
+    /**
+     * @return 1 when the image was referenced already, 0 when it has no row yet
+     */
+    @Modifying
+    @Transactional
+    @Query("update StoredImage i set i.refCount = i.refCount + 1 where i.name = :name")
+    int addReference(@Param("name") String name);
+
+    /**
+     * Fails with a duplicate key when another caller inserted the row first.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into stored_image (name, ref_count) values (:name, 1)", nativeQuery = true)
+    int insertFirstReference(@Param("name") String name);
+
+    /**
+     * @return 1 when a reference was released and others remain, 0 when the caller holds the last one
+     */
+    @Modifying
+    @Transactional
+    @Query("update StoredImage i set i.refCount = i.refCount - 1 where i.name = :name and i.refCount > 1")
+    int releaseSharedReference(@Param("name") String name);
+
+    /**
+     * @return 1 when the last reference was released, 0 when the image is shared again or has no row
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from StoredImage i where i.name = :name and i.refCount <= 1")
+    int releaseLastReference(@Param("name") String name);
+}
@@ -0,0 +1,19 @@
+package com.iammanh.hoaxifyservice.file.vm;
+
+import com.iammanh.hoaxifyservice.file.FileAttachment;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class FileAttachmentVM {
+    private long id;
+    private String name;
+    private String fileType;
+
+    public FileAttachmentVM(FileAttachment attachment) {
+        this.id = attachment.getId();
+        this.name = attachment.getName();
+        this.fileType = attachment.getFileType();
+    }
+}
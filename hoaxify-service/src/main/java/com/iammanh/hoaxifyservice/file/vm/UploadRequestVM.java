@@ -0,0 +1,11 @@
+package com.iammanh.hoaxifyservice.file.vm;
+
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+
+@Data
+public class UploadRequestVM {
+    @Min(1)
+    private long size;
+}
@@ -0,0 +1,34 @@
+package com.iammanh.hoaxifyservice.file.vm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.iammanh.hoaxifyservice.file.FileAttachment;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of a chunked upload. The next chunk starts at {@code offset} and is
+ * {@code chunkSize} bytes long, or shorter when it is the last one.
+ */
+@Data
+@NoArgsConstructor
+public class UploadVM {
+    private long id;
+    private long size;
+    private long offset;
+    private long chunkSize;
+    private boolean complete;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String name;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String fileType;
+
+    public UploadVM(FileAttachment attachment, long chunkSize) {
+        this.id = attachment.getId();
+        this.size = attachment.getSize();
+        this.offset = attachment.getUploadedSize();
+        this.chunkSize = chunkSize;
+        this.complete = attachment.isComplete();
+        this.name = attachment.getName();
+        this.fileType = attachment.getFileType();
+    }
+}
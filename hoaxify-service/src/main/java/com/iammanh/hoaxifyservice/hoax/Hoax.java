@@ -1,7 +1,10 @@
 package com.iammanh.hoaxifyservice.hoax;
 
+import com.iammanh.hoaxifyservice.file.FileAttachment;
 import com.iammanh.hoaxifyservice.user.User;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -10,9 +13,22 @@ import java.util.Date;
 
 @Data
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_hoax_user_id_id", columnList = "user_id, id desc"),
+        @Index(name = "idx_hoax_id_desc", columnList = "id desc"),
+        @Index(name = "uk_hoax_attachment_id", columnList = "attachment_id", unique = true)
+})
 public class Hoax {
+    /**
+     * Ids come from {@code hoax_sequence} one at a time. The feeds and the "after id" polls
+     * take a larger id for a newer hoax, which blocks of ids kept by each instance would break.
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "hoax_sequence")
+    @GenericGenerator(name = "hoax_sequence", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "hoax_sequence"),
+            @Parameter(name = "increment_size", value = "1")
+    })
     private long id;
 
     @NotNull
@@ -25,4 +41,7 @@ public class Hoax {
 
     @ManyToOne
     private User user;
+
+    @OneToOne
+    private FileAttachment attachment;
 }
@@ -1,28 +1,43 @@
 package com.iammanh.hoaxifyservice.hoax;
 
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxBatchVM;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxSliceVM;
 import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
 import com.iammanh.hoaxifyservice.shared.CurrentUser;
 import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1")
 public class HoaxController {
 
+    private static final int MAX_SLICE_LIMIT = 100;
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final HoaxService hoaxService;
+    private final HoaxStreamService hoaxStreamService;
+    private final UserService userService;
 
-    public HoaxController(HoaxService hoaxService) {
+    public HoaxController(HoaxService hoaxService, HoaxStreamService hoaxStreamService, UserService userService) {
         this.hoaxService = hoaxService;
+        this.hoaxStreamService = hoaxStreamService;
+        this.userService = userService;
     }
 
     @PostMapping("/hoaxes")
@@ -33,15 +48,48 @@ public class HoaxController {
                 .body(new HoaxVM(savedHoax));
     }
 
+    /**
+     * Items are validated one by one, the response tells for each whether it was created.
+     */
+    @PostMapping("/hoaxes/batch")
+    public ResponseEntity<HoaxBatchVM> createHoaxes(@RequestBody List<Hoax> hoaxes, @CurrentUser User loggedInUser) {
+        if (hoaxes.isEmpty() || hoaxes.size() > MAX_BATCH_SIZE)
+            throw new BadRequestException("A batch holds 1 to " + MAX_BATCH_SIZE + " hoaxes");
+        return ResponseEntity.ok(new HoaxBatchVM(hoaxService.saveHoaxes(hoaxes, loggedInUser)));
+    }
+
     @GetMapping("/hoaxes")
-    public ResponseEntity<Page<HoaxVM>> getHoaxes(Pageable pageable) {
-        return ResponseEntity.ok(hoaxService.findAll(pageable).map(HoaxVM::new));
+    public ResponseEntity<Page<HoaxVM>> getHoaxes(Pageable pageable, WebRequest request) {
+        Optional<String> tag = hoaxService.findAllTag(pageable);
+        if (tag.isPresent() && request.checkNotModified(tag.get()))
+            return null;
+        return ResponseEntity.ok(hoaxService.findAll(pageable));
     }
 
     @GetMapping("/users/{username}/hoaxes")
     public ResponseEntity<Page<HoaxVM>> getHoaxesOfUser(@PathVariable String username, Pageable pageable) {
-        Page<Hoax> hoaxesOfUserPage = hoaxService.getHoaxesOfUser(username, pageable);
-        return ResponseEntity.ok(hoaxesOfUserPage.map(HoaxVM::new));
+        return ResponseEntity.ok(hoaxService.getHoaxesOfUser(username, pageable));
+    }
+
+    @GetMapping(value = "/hoaxes", params = "limit")
+    public ResponseEntity<HoaxSliceVM> getHoaxSlice(
+            @RequestParam int limit,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) String cursor
+    ) {
+        Slice<Hoax> slice = hoaxService.getHoaxSlice(HoaxCursor.resolve(before, cursor), null, clampLimit(limit));
+        return ResponseEntity.ok(HoaxSliceVM.of(slice));
+    }
+
+    @GetMapping(value = "/users/{username}/hoaxes", params = "limit")
+    public ResponseEntity<HoaxSliceVM> getHoaxSliceOfUser(
+            @PathVariable String username,
+            @RequestParam int limit,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) String cursor
+    ) {
+        Slice<Hoax> slice = hoaxService.getHoaxSlice(HoaxCursor.resolve(before, cursor), username, clampLimit(limit));
+        return ResponseEntity.ok(HoaxSliceVM.of(slice));
     }
 
     @GetMapping(value = {"/hoaxes/{id:[0-9]+}", "/users/{username}/hoaxes/{id:[0-9]+}"})
@@ -58,9 +106,21 @@ public class HoaxController {
         if(count)
             return ResponseEntity.ok(Collections.singletonMap("count", hoaxService.getNewHoaxCount(id, username)));
 
-        List<HoaxVM> hoaxes = hoaxService.getNewHoaxes(id, username, pageable).stream()
-                .map(HoaxVM::new)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(hoaxes);
+        return ResponseEntity.ok(hoaxService.getNewHoaxes(id, username, pageable));
+    }
+
+    @GetMapping(value = "/hoaxes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamHoaxes() {
+        return hoaxStreamService.subscribe(null);
+    }
+
+    @GetMapping(value = "/users/{username}/hoaxes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamHoaxesOfUser(@PathVariable String username) {
+        userService.getUserByUsername(username);
+        return hoaxStreamService.subscribe(username);
+    }
+
+    private int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_SLICE_LIMIT));
     }
 }
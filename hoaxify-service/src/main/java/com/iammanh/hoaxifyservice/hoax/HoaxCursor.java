@@ -0,0 +1,38 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor handed to clients, currently the base64url encoded id of the
+ * last hoax on the previous slice.
+ */
+public final class HoaxCursor {
+
+    private HoaxCursor() {
+    }
+
+    public static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decode(String cursor) {
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    /**
+     * @return the id to seek before, {@code null} for the first slice
+     */
+    public static Long resolve(Long before, String cursor) {
+        if (cursor != null)
+            return decode(cursor);
+        return before;
+    }
+}
@@ -0,0 +1,273 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import com.iammanh.hoaxifyservice.shared.EntityTags;
+import com.iammanh.hoaxifyservice.user.UserUpdatedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the newest {@code hoaxify.feed-cache-size} hoaxes of the global feed and of
+ * recently viewed authors in memory, so the first page and the "new since id" polls
+ * are answered without a query.
+ * <p>
+ * A window is loaded from the database the first time it is asked for and from then on
+ * only updated by {@link #writeThrough}. That is only correct while every hoax is saved
+ * through this instance, a second instance writing to the same database would not be seen.
+ * Requests a window cannot answer exactly return empty and go to the database.
+ */
+@Component
+public class HoaxFeedCache {
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "id");
+    private static final Sort OLDEST_FIRST = Sort.by(Sort.Direction.ASC, "id");
+
+    private final HoaxRepository hoaxRepository;
+    private final TransactionTemplate primaryReads;
+    private final int capacity;
+    private final Cache<Long, FeedWindow> authorWindows;
+    private volatile FeedWindow globalWindow;
+    private final AtomicLong generations = new AtomicLong();
+
+    /**
+     * Saves hold the read lock from the insert until their hoax is in the windows, loading
+     * a window takes the write lock, so a hoax is either seen by the load or added after it.
+     */
+    private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+
+    public HoaxFeedCache(HoaxRepository hoaxRepository, AppConfiguration appConfiguration, MeterRegistry meterRegistry,
+                         PlatformTransactionManager transactionManager) {
+        this.hoaxRepository = hoaxRepository;
+        this.primaryReads = new TransactionTemplate(transactionManager);
+        this.primaryReads.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.capacity = appConfiguration.getFeedCacheSize();
+        this.authorWindows = Caffeine.newBuilder()
+                .maximumSize(appConfiguration.getFeedCacheAuthors())
+                .expireAfterAccess(appConfiguration.getFeedCacheAuthorIdle(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, authorWindows, "hoax-feeds");
+    }
+
+    public HoaxVM writeThrough(Supplier<Hoax> save) {
+        return writeThroughAll(() -> Collections.singletonList(save.get())).get(0);
+    }
+
+    public List<HoaxVM> writeThroughAll(Supplier<List<Hoax>> save) {
+        loadLock.readLock().lock();
+        try {
+            List<HoaxVM> hoaxes = new ArrayList<>();
+            for (Hoax saved : save.get())
+                hoaxes.add(new HoaxVM(saved));
+            FeedWindow global = globalWindow;
+            for (HoaxVM hoax : hoaxes) {
+                if (global != null)
+                    global.add(hoax);
+                FeedWindow author = authorWindows.getIfPresent(hoax.getUser().getId());
+                if (author != null)
+                    author.add(hoax);
+            }
+            return hoaxes;
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param authorId {@code null} for the global feed
+     */
+    public Optional<Page<HoaxVM>> firstPage(Long authorId, Pageable pageable) {
+        if (!isFirstPage(pageable))
+            return Optional.empty();
+        return window(authorId).firstPage(pageable);
+    }
+
+    /**
+     * A weak ETag of what {@link #firstPage} returns for the same arguments, empty when the
+     * window cannot answer it. The tag changes with every hoax added to the window and with
+     * every reload of it, so an unchanged tag means an unchanged page.
+     */
+    public Optional<String> firstPageTag(Long authorId, Pageable pageable) {
+        if (!isFirstPage(pageable))
+            return Optional.empty();
+        return window(authorId).firstPageTag(pageable);
+    }
+
+    public Optional<List<HoaxVM>> newerThan(Long authorId, long id, Sort sort) {
+        if (!sort.isUnsorted() && !sort.equals(NEWEST_FIRST) && !sort.equals(OLDEST_FIRST))
+            return Optional.empty();
+        return window(authorId).newerThan(id).map(hoaxes -> {
+            if (sort.equals(OLDEST_FIRST))
+                Collections.reverse(hoaxes);
+            return hoaxes;
+        });
+    }
+
+    public OptionalLong newerThanCount(Long authorId, long id) {
+        return window(authorId).newerThanCount(id);
+    }
+
+    public void invalidateAll() {
+        loadLock.writeLock().lock();
+        try {
+            globalWindow = null;
+            authorWindows.invalidateAll();
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onUserUpdated(UserUpdatedEvent event) {
+        loadLock.writeLock().lock();
+        try {
+            authorWindows.invalidate(event.getUserId());
+            FeedWindow global = globalWindow;
+            if (global != null && global.hasAuthor(event.getUserId()))
+                globalWindow = null;
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    private boolean isFirstPage(Pageable pageable) {
+        return pageable.getPageNumber() == 0 && pageable.getPageSize() <= capacity && pageable.getSort().equals(NEWEST_FIRST);
+    }
+
+    private FeedWindow window(Long authorId) {
+        FeedWindow window = authorId == null ? globalWindow : authorWindows.getIfPresent(authorId);
+        if (window != null)
+            return window;
+
+        loadLock.writeLock().lock();
+        try {
+            if (authorId != null)
+                return authorWindows.get(authorId, id -> load(authorIs(id)));
+            if (globalWindow == null)
+                globalWindow = load((root, query, builder) -> null);
+            return globalWindow;
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads in a read-write transaction of its own, so a window is never loaded from a
+     * lagging read replica. Callers must not be in a transaction themselves: the load holds
+     * the write lock, and a caller sitting on a second connection while savers wait on the
+     * lock with theirs can drain the pool.
+     */
+    private FeedWindow load(Specification<Hoax> spec) {
+        return primaryReads.execute(status -> {
+            FeedWindow window = new FeedWindow(generations.incrementAndGet(), capacity, hoaxRepository.count(spec));
+            hoaxRepository.findNewestFirst(spec, capacity).forEach(hoax -> window.put(new HoaxVM(hoax)));
+            return window;
+        });
+    }
+
+    private static Specification<Hoax> authorIs(long authorId) {
+        return (Specification<Hoax>) (root, query, builder) -> builder.equal(root.get("user").get("id"), authorId);
+    }
+
+    /**
+     * The newest hoaxes of one feed, newest first, together with the size of the whole feed.
+     */
+    private static final class FeedWindow {
+
+        private final long generation;
+        private final int capacity;
+        private final NavigableMap<Long, HoaxVM> hoaxes = new TreeMap<>(Comparator.reverseOrder());
+        private long total;
+
+        FeedWindow(long generation, int capacity, long total) {
+            this.generation = generation;
+            this.capacity = capacity;
+            this.total = total;
+        }
+
+        synchronized void put(HoaxVM hoax) {
+            hoaxes.put(hoax.getId(), hoax);
+            if (hoaxes.size() > capacity)
+                hoaxes.pollLastEntry();
+        }
+
+        synchronized void add(HoaxVM hoax) {
+            if (hoaxes.containsKey(hoax.getId()))
+                return;
+            total++;
+            put(hoax);
+        }
+
+        synchronized Optional<Page<HoaxVM>> firstPage(Pageable pageable) {
+            if (hoaxes.size() < pageable.getPageSize() && !isComplete())
+                return Optional.empty();
+            List<HoaxVM> content = new ArrayList<>(pageable.getPageSize());
+            Iterator<HoaxVM> iterator = hoaxes.values().iterator();
+            while (content.size() < pageable.getPageSize() && iterator.hasNext())
+                content.add(iterator.next());
+            return Optional.of(new PageImpl<>(content, pageable, total));
+        }
+
+        synchronized Optional<String> firstPageTag(Pageable pageable) {
+            if (hoaxes.size() < pageable.getPageSize() && !isComplete())
+                return Optional.empty();
+            return Optional.of(EntityTags.weak(generation, hoaxes.isEmpty() ? 0 : hoaxes.firstKey(), total));
+        }
+
+        synchronized Optional<List<HoaxVM>> newerThan(long id) {
+            if (!covers(id))
+                return Optional.empty();
+            return Optional.of(new ArrayList<>(hoaxes.headMap(id, false).values()));
+        }
+
+        synchronized OptionalLong newerThanCount(long id) {
+            if (!covers(id))
+                return OptionalLong.empty();
+            return OptionalLong.of(hoaxes.headMap(id, false).size());
+        }
+
+        synchronized boolean hasAuthor(long userId) {
+            return hoaxes.values().stream().anyMatch(hoax -> hoax.getUser().getId() == userId);
+        }
+
+        /**
+         * Every hoax newer than {@code id} is in the window when the window holds the whole
+         * feed or when its oldest hoax is not older than {@code id}.
+         */
+        private boolean covers(long id) {
+            return isComplete() || (!hoaxes.isEmpty() && hoaxes.lastKey() <= id);
+        }
+
+        private boolean isComplete() {
+            return hoaxes.size() == total;
+        }
+    }
+}
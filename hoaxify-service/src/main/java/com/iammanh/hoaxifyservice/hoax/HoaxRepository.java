@@ -3,9 +3,41 @@ package com.iammanh.hoaxifyservice.hoax;
 import com.iammanh.hoaxifyservice.user.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface HoaxRepository extends JpaRepository<Hoax, Long>, JpaSpecificationExecutor<Hoax> {
+import java.util.List;
+
+/**
+ * Feed queries load the author and the attachment with the hoax, otherwise the eager
+ * {@code Hoax.user} and {@code Hoax.attachment} associations are resolved with one extra
+ * select per distinct author and per attachment.
+ */
+public interface HoaxRepository extends JpaRepository<Hoax, Long>, JpaSpecificationExecutor<Hoax>, HoaxRepositoryCustom {
+
+    @Override
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    Page<Hoax> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    Page<Hoax> findAll(Specification<Hoax> spec, Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = {"user", "attachment"})
+    List<Hoax> findAll(Specification<Hoax> spec, Sort sort);
+
+    @EntityGraph(attributePaths = {"user", "attachment"})
     Page<Hoax> findByUser(User user, Pageable pageable);
+
+    /**
+     * Oldest first from {@code after} on, for walking the whole table in keyset pages.
+     */
+    @Query("select h from Hoax h join fetch h.user left join fetch h.attachment where h.id > :after order by h.id")
+    List<Hoax> findOldestFirstAfter(@Param("after") long after, Pageable pageable);
 }
@@ -0,0 +1,13 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface HoaxRepositoryCustom {
+
+    /**
+     * Newest first, at most {@code limit} hoaxes matching {@code spec} without a count query.
+     */
+    List<Hoax> findNewestFirst(Specification<Hoax> spec, int limit);
+}
@@ -0,0 +1,34 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+public class HoaxRepositoryImpl implements HoaxRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Hoax> findNewestFirst(Specification<Hoax> spec, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Hoax> query = builder.createQuery(Hoax.class);
+        Root<Hoax> root = query.from(Hoax.class);
+        root.fetch("user");
+        root.fetch("attachment", JoinType.LEFT);
+        Predicate predicate = spec.toPredicate(root, query, builder);
+        if (predicate != null)
+            query.where(predicate);
+        query.orderBy(builder.desc(root.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -1,46 +1,129 @@
 package com.iammanh.hoaxifyservice.hoax;
 
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import com.iammanh.hoaxifyservice.file.FileAttachmentService;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxBatchItemVM;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
 import com.iammanh.hoaxifyservice.user.User;
 import com.iammanh.hoaxifyservice.user.UserService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class HoaxService {
 
     private final HoaxRepository hoaxRepository;
     private final UserService userService;
-
-    public HoaxService(HoaxRepository hoaxRepository, UserService userService) {
+    private final HoaxStreamService hoaxStreamService;
+    private final HoaxFeedCache hoaxFeedCache;
+    private final FileAttachmentService fileAttachmentService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+
+    public HoaxService(HoaxRepository hoaxRepository, UserService userService, HoaxStreamService hoaxStreamService,
+                       HoaxFeedCache hoaxFeedCache, FileAttachmentService fileAttachmentService,
+                       ApplicationEventPublisher eventPublisher, Validator validator) {
         this.hoaxRepository = hoaxRepository;
         this.userService = userService;
+        this.hoaxStreamService = hoaxStreamService;
+        this.hoaxFeedCache = hoaxFeedCache;
+        this.fileAttachmentService = fileAttachmentService;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
     }
 
     public Hoax saveHoax(Hoax hoax, User user) {
         hoax.setTimestamp(new Date());
-        hoax.setUser(user);
-        hoaxRepository.save(hoax);
+        hoax.setUser(userService.getUserByUsername(user.getUsername()));
+        if (hoax.getAttachment() != null)
+            hoax.setAttachment(fileAttachmentService.getForHoax(hoax.getAttachment().getId(), user));
+        HoaxVM saved = hoaxFeedCache.writeThrough(() -> hoaxRepository.save(hoax));
+        announce(Collections.singletonList(saved));
         return hoax;
     }
 
-    public Page<Hoax> findAll(Pageable pageable) {
-        return hoaxRepository.findAll(pageable);
+    /**
+     * Saves the valid hoaxes of {@code hoaxes} in one transaction, the inserts are sent in
+     * JDBC batches. Invalid items are reported and skipped, they do not fail the others.
+     */
+    public List<HoaxBatchItemVM> saveHoaxes(List<Hoax> hoaxes, User user) {
+        User author = userService.getUserByUsername(user.getUsername());
+        Date timestamp = new Date();
+        HoaxBatchItemVM[] results = new HoaxBatchItemVM[hoaxes.size()];
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        List<Hoax> accepted = new ArrayList<>();
+        Set<Long> attachmentIds = new HashSet<>();
+        for (int index = 0; index < hoaxes.size(); index++) {
+            Hoax hoax = hoaxes.get(index);
+            Map<String, String> errors = validate(hoax, user, attachmentIds);
+            if (!errors.isEmpty()) {
+                results[index] = HoaxBatchItemVM.rejected(index, errors);
+                continue;
+            }
+            hoax.setTimestamp(timestamp);
+            hoax.setUser(author);
+            acceptedIndexes.add(index);
+            accepted.add(hoax);
+        }
+
+        if (!accepted.isEmpty()) {
+            List<HoaxVM> saved = hoaxFeedCache.writeThroughAll(() -> hoaxRepository.saveAll(accepted));
+            for (int i = 0; i < saved.size(); i++)
+                results[acceptedIndexes.get(i)] = HoaxBatchItemVM.created(acceptedIndexes.get(i), saved.get(i).getId());
+            announce(saved);
+        }
+        return Arrays.asList(results);
+    }
+
+    public Optional<String> findAllTag(Pageable pageable) {
+        return hoaxFeedCache.firstPageTag(null, pageable);
+    }
+
+    /**
+     * Not transactional, a window that has to be loaded gets the only connection this thread
+     * holds. The database fallback runs in the repository's own read-only transaction.
+     */
+    public Page<HoaxVM> findAll(Pageable pageable) {
+        return hoaxFeedCache.firstPage(null, pageable)
+                .orElseGet(() -> hoaxRepository.findAll(pageable).map(HoaxVM::new));
     }
 
-    public Page<Hoax> getHoaxesOfUser(String username, Pageable pageable) {
+    /**
+     * Not transactional for the same reason as {@link #findAll}.
+     */
+    public Page<HoaxVM> getHoaxesOfUser(String username, Pageable pageable) {
         User user = userService.getUserByUsername(username);
-        return hoaxRepository.findByUser(user, pageable);
+        return hoaxFeedCache.firstPage(user.getId(), pageable)
+                .orElseGet(() -> hoaxRepository.findByUser(user, pageable).map(HoaxVM::new));
     }
 
+    @Transactional(readOnly = true)
     public Page<Hoax> getOldHoaxes(Long id, String username, Pageable pageable) {
         Specification<Hoax> spec = Specification.where(idLessThan(id));
         if(username != null) {
@@ -51,26 +134,73 @@ public class HoaxService {
         return hoaxRepository.findAll(spec, pageable);
     }
 
-    public List<Hoax> getNewHoaxes(Long id, String username, Pageable pageable) {
+    public Slice<Hoax> getHoaxSlice(Long before, String username, int limit) {
+        Specification<Hoax> spec = Specification.where(before == null ? null : idLessThan(before));
+        if(username != null) {
+            User inDB = userService.getUserByUsername(username);
+            spec = spec.and(userIs(inDB));
+        }
+
+        List<Hoax> hoaxes = hoaxRepository.findNewestFirst(spec, limit + 1);
+        boolean hasNext = hoaxes.size() > limit;
+        return new SliceImpl<>(hasNext ? hoaxes.subList(0, limit) : hoaxes, PageRequest.of(0, limit), hasNext);
+    }
+
+    public List<HoaxVM> getNewHoaxes(Long id, String username, Pageable pageable) {
         Specification<Hoax> spec = Specification.where(idGreaterThan(id));
+        Long authorId = null;
         if(username != null) {
             User inDB = userService.getUserByUsername(username);
             spec = spec.and(userIs(inDB));
+            authorId = inDB.getId();
         }
 
-        return hoaxRepository.findAll(spec, pageable.getSort());
+        Optional<List<HoaxVM>> cached = hoaxFeedCache.newerThan(authorId, id, pageable.getSort());
+        if (cached.isPresent())
+            return cached.get();
+        return hoaxRepository.findAll(spec, pageable.getSort()).stream()
+                .map(HoaxVM::new)
+                .collect(Collectors.toList());
     }
 
     public long getNewHoaxCount(Long id, String username) {
         Specification<Hoax> spec = Specification.where(idGreaterThan(id));
+        Long authorId = null;
         if(username != null) {
             User inDB = userService.getUserByUsername(username);
             spec = spec.and(userIs(inDB));
+            authorId = inDB.getId();
         }
 
+        OptionalLong cached = hoaxFeedCache.newerThanCount(authorId, id);
+        if (cached.isPresent())
+            return cached.getAsLong();
         return hoaxRepository.count(spec);
     }
 
+    private Map<String, String> validate(Hoax hoax, User user, Set<Long> attachmentIds) {
+        if (hoax == null)
+            return Collections.singletonMap("hoax", "must not be null");
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (ConstraintViolation<Hoax> violation : validator.validate(hoax))
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        if (errors.isEmpty() && hoax.getAttachment() != null) {
+            try {
+                if (!attachmentIds.add(hoax.getAttachment().getId()))
+                    throw new BadRequestException("Attachment is already used by another hoax");
+                hoax.setAttachment(fileAttachmentService.getForHoax(hoax.getAttachment().getId(), user));
+            } catch (BadRequestException e) {
+                errors.put("attachment", e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    private void announce(List<HoaxVM> hoaxes) {
+        hoaxes.forEach(hoaxStreamService::publish);
+        eventPublisher.publishEvent(new HoaxesCreatedEvent(hoaxes.get(0).getUser().getId(), hoaxes));
+    }
+
     private Specification<Hoax> userIs(User user) {
         return (Specification<Hoax>) (root, query, builder) -> builder.equal(root.get("user"), user);
     }
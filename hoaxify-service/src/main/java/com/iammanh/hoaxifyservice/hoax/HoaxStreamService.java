@@ -0,0 +1,136 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes newly saved hoaxes to clients over server-sent events, so an idle feed
+ * holds a parked connection instead of polling for the new hoax count.
+ * <p>
+ * Every subscriber gets a bounded buffer which is drained on a small dispatcher
+ * pool, the thread saving the hoax never writes to a client socket. When a slow
+ * client lets its buffer fill up, the overflowing hoaxes are dropped and the client
+ * is told to resync through the count endpoint instead.
+ */
+@Service
+public class HoaxStreamService {
+
+    static final String HOAX_EVENT = "hoax";
+    static final String RESYNC_EVENT = "resync";
+
+    private final AppConfiguration appConfiguration;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService dispatcher = Executors.newFixedThreadPool(2, new CustomizableThreadFactory("hoax-stream-"));
+
+    public HoaxStreamService(AppConfiguration appConfiguration) {
+        this.appConfiguration = appConfiguration;
+    }
+
+    /**
+     * @param username only hoaxes of this user are pushed, {@code null} subscribes to the global feed
+     */
+    public SseEmitter subscribe(String username) {
+        SseEmitter emitter = new SseEmitter(appConfiguration.getStreamTimeout());
+        Subscriber subscriber = new Subscriber(emitter, username, appConfiguration.getStreamBufferSize());
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public void publish(HoaxVM hoax) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.accepts(hoax)) {
+                if (!subscriber.buffer.offer(hoax))
+                    subscriber.overflowed = true;
+                scheduleDrain(subscriber);
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "#{@appConfiguration.streamHeartbeatInterval}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatPending = true;
+            scheduleDrain(subscriber);
+        }
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true))
+            dispatcher.execute(() -> drain(subscriber));
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            if (subscriber.heartbeatPending) {
+                subscriber.heartbeatPending = false;
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            HoaxVM hoax;
+            while ((hoax = subscriber.buffer.poll()) != null) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(hoax.getId()))
+                        .name(HOAX_EVENT)
+                        .data(hoax));
+            }
+            if (subscriber.overflowed) {
+                subscriber.overflowed = false;
+                subscriber.emitter.send(SseEmitter.event().name(RESYNC_EVENT).data(""));
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (!subscriber.buffer.isEmpty() || subscriber.overflowed || subscriber.heartbeatPending)
+            scheduleDrain(subscriber);
+    }
+
+    static class Subscriber {
+        private final SseEmitter emitter;
+        private final String username;
+        private final BlockingQueue<HoaxVM> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean overflowed;
+        private volatile boolean heartbeatPending;
+
+        Subscriber(SseEmitter emitter, String username, int bufferSize) {
+            this.emitter = emitter;
+            this.username = username;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        boolean accepts(HoaxVM hoax) {
+            return username == null || username.equals(hoax.getUser().getUsername());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import lombok.Value;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Published by {@link HoaxService} once hoaxes of one author are saved, a batch is published as one event.
+ */
+@Value
+public class HoaxesCreatedEvent {
+    private long authorId;
+    private List<HoaxVM> hoaxes;
+
+    public List<Long> getHoaxIds() {
+        return hoaxes.stream().map(HoaxVM::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,29 @@
+package com.iammanh.hoaxifyservice.hoax.vm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Outcome of one item of a batch, {@code index} is its position in the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HoaxBatchItemVM {
+    private int index;
+    private Long id;
+    private Map<String, String> validationErrors;
+
+    public static HoaxBatchItemVM created(int index, long id) {
+        return new HoaxBatchItemVM(index, id, null);
+    }
+
+    public static HoaxBatchItemVM rejected(int index, Map<String, String> validationErrors) {
+        return new HoaxBatchItemVM(index, null, validationErrors);
+    }
+}
@@ -0,0 +1,20 @@
+package com.iammanh.hoaxifyservice.hoax.vm;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class HoaxBatchVM {
+    private int created;
+    private int rejected;
+    private List<HoaxBatchItemVM> items;
+
+    public HoaxBatchVM(List<HoaxBatchItemVM> items) {
+        this.items = items;
+        this.created = (int) items.stream().filter(item -> item.getId() != null).count();
+        this.rejected = items.size() - created;
+    }
+}
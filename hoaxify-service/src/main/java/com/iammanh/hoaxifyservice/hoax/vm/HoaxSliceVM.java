@@ -0,0 +1,32 @@
+package com.iammanh.hoaxifyservice.hoax.vm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxCursor;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoaxSliceVM {
+    private List<HoaxVM> content;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+    private boolean last;
+
+    public static HoaxSliceVM of(Slice<Hoax> slice) {
+        List<HoaxVM> content = slice.getContent().stream()
+                .map(HoaxVM::new)
+                .collect(Collectors.toList());
+        String nextCursor = slice.hasNext()
+                ? HoaxCursor.encode(content.get(content.size() - 1).getId())
+                : null;
+        return new HoaxSliceVM(content, nextCursor, !slice.hasNext());
+    }
+}
@@ -1,5 +1,6 @@
 package com.iammanh.hoaxifyservice.hoax.vm;
 
+import com.iammanh.hoaxifyservice.file.vm.FileAttachmentVM;
 import com.iammanh.hoaxifyservice.hoax.Hoax;
 import com.iammanh.hoaxifyservice.user.vm.UserVM;
 import lombok.Data;
@@ -14,11 +15,14 @@ public class HoaxVM {
     private String content;
     private Date timestamp;
     private UserVM user;
+    private FileAttachmentVM attachment;
 
     public HoaxVM(Hoax hoax) {
         this.id = hoax.getId();
         this.content = hoax.getContent();
         this.timestamp = hoax.getTimestamp();
         this.user = new UserVM(hoax.getUser());
+        if (hoax.getAttachment() != null)
+            this.attachment = new FileAttachmentVM(hoax.getAttachment());
     }
 }
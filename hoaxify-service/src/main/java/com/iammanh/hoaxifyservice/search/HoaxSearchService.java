@@ -0,0 +1,286 @@
+package com.iammanh.hoaxifyservice.search;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxRepository;
+import com.iammanh.hoaxifyservice.hoax.HoaxesCreatedEvent;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxSliceVM;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over hoax content with an in-process Lucene index.
+ * <p>
+ * The index is rebuilt from the database on startup and kept up to date from
+ * {@link HoaxesCreatedEvent}. It lives in memory, or under {@code hoaxify.search-index-folder}
+ * of the upload path when that is set, and is never the source of truth: hits are loaded
+ * from the database and hits without a hoax are dropped.
+ * <p>
+ * Hits are ranked by BM25 relevance multiplied by a recency factor that halves its
+ * distance to 0.5 every {@code hoaxify.search-recency-half-life}, so relevance dominates and
+ * recency breaks near ties. Pages continue after the score and id of the last hit, the
+ * scores of a page can drift slightly when many hoaxes are indexed in between.
+ */
+@Service
+public class HoaxSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(HoaxSearchService.class);
+    private static final String UID = "uid";
+    private static final String ID = "id";
+    private static final String CONTENT = "content";
+    private static final String TIMESTAMP = "timestamp";
+    private static final int REBUILD_BATCH = 1000;
+    private static final Sort RANKING = new Sort(SortField.FIELD_SCORE, new SortField(ID, SortField.Type.LONG, true));
+
+    private final HoaxRepository hoaxRepository;
+    private final long recencyHalfLife;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final AtomicLong maxIndexedId = new AtomicLong();
+
+    public HoaxSearchService(HoaxRepository hoaxRepository, AppConfiguration appConfiguration) throws IOException {
+        this.hoaxRepository = hoaxRepository;
+        this.recencyHalfLife = appConfiguration.getSearchRecencyHalfLife();
+        if (appConfiguration.getSearchIndexFolder() == null) {
+            this.directory = new ByteBuffersDirectory();
+        } else {
+            Path path = Paths.get(appConfiguration.getFullSearchIndexPath());
+            FileUtils.deleteDirectory(path.toFile());
+            this.directory = FSDirectory.open(path);
+        }
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() throws IOException {
+        writer.deleteAll();
+        maxIndexedId.set(0);
+        long after = 0;
+        List<Hoax> hoaxes;
+        do {
+            hoaxes = hoaxRepository.findOldestFirstAfter(after, PageRequest.of(0, REBUILD_BATCH));
+            for (Hoax hoax : hoaxes) {
+                index(hoax.getId(), hoax.getContent(), hoax.getTimestamp());
+                after = hoax.getId();
+            }
+        } while (hoaxes.size() == REBUILD_BATCH);
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * Runs after the hoaxes are saved, so a failing index write is logged instead of failing
+     * the post. Hoaxes missing from the index are added back by {@link #rebuild()} on the next
+     * start.
+     */
+    @EventListener
+    public void onHoaxesCreated(HoaxesCreatedEvent event) {
+        try {
+            for (HoaxVM hoax : event.getHoaxes())
+                index(hoax.getId(), hoax.getContent(), hoax.getTimestamp());
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Hoaxes {} were not added to the search index", event.getHoaxIds(), e);
+        }
+    }
+
+    public HoaxSliceVM search(String text, String cursor, int limit) throws IOException {
+        Query match = new QueryBuilder(analyzer).createBooleanQuery(CONTENT, text, BooleanClause.Occur.MUST);
+        if (match == null)
+            throw new BadRequestException("Search for at least one word");
+        SearchCursor after = cursor == null ? null : SearchCursor.decode(cursor);
+        long asOf = after == null ? System.currentTimeMillis() : after.getAsOf();
+        long maxId = after == null ? maxIndexedId.get() : after.getMaxId();
+
+        Query query = FunctionScoreQuery.boostByValue(new BooleanQuery.Builder()
+                .add(match, BooleanClause.Occur.MUST)
+                .add(LongPoint.newRangeQuery(ID, Long.MIN_VALUE, maxId), BooleanClause.Occur.FILTER)
+                .build(), new Recency(asOf, recencyHalfLife));
+
+        List<FieldDoc> hits = new ArrayList<>(limit + 1);
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs top = after == null
+                    ? searcher.search(query, limit + 1, RANKING, false)
+                    : searcher.searchAfter(new FieldDoc(Integer.MAX_VALUE, Float.NaN, new Object[]{after.getScore(), after.getId()}),
+                    query, limit + 1, RANKING, false);
+            for (ScoreDoc scoreDoc : top.scoreDocs)
+                hits.add((FieldDoc) scoreDoc);
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        boolean hasNext = hits.size() > limit;
+        List<FieldDoc> page = hasNext ? hits.subList(0, limit) : hits;
+        List<HoaxVM> content = load(page.stream().map(HoaxSearchService::idOf).collect(Collectors.toList()));
+        String nextCursor = null;
+        if (hasNext) {
+            FieldDoc last = page.get(page.size() - 1);
+            nextCursor = new SearchCursor(asOf, maxId, (Float) last.fields[0], idOf(last)).encode();
+        }
+        return new HoaxSliceVM(content, nextCursor, !hasNext);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private void index(long id, String content, Date timestamp) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(UID, String.valueOf(id), Field.Store.NO));
+        document.add(new LongPoint(ID, id));
+        document.add(new NumericDocValuesField(ID, id));
+        document.add(new TextField(CONTENT, content, Field.Store.NO));
+        document.add(new NumericDocValuesField(TIMESTAMP, timestamp == null ? 0 : timestamp.getTime()));
+        writer.updateDocument(new Term(UID, String.valueOf(id)), document);
+        maxIndexedId.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * @return the hoaxes in the order of {@code ids}
+     */
+    private List<HoaxVM> load(List<Long> ids) {
+        if (ids.isEmpty())
+            return new ArrayList<>();
+        Map<Long, Hoax> hoaxes = hoaxRepository.findNewestFirst(idIn(ids), ids.size()).stream()
+                .collect(Collectors.toMap(Hoax::getId, Function.identity()));
+        return ids.stream()
+                .map(hoaxes::get)
+                .filter(Objects::nonNull)
+                .map(HoaxVM::new)
+                .collect(Collectors.toList());
+    }
+
+    private static long idOf(FieldDoc hit) {
+        return (Long) hit.fields[1];
+    }
+
+    private static Specification<Hoax> idIn(Collection<Long> ids) {
+        return (Specification<Hoax>) (root, query, builder) -> root.get("id").in(ids);
+    }
+
+    /**
+     * {@code 0.5 + 0.5 * 2^(-age / halfLife)} of the hoax timestamp, age measured from {@code asOf}.
+     */
+    private static final class Recency extends DoubleValuesSource {
+
+        private final long asOf;
+        private final long halfLife;
+
+        Recency(long asOf, long halfLife) {
+            this.asOf = asOf;
+            this.halfLife = halfLife;
+        }
+
+        @Override
+        public DoubleValues getValues(LeafReaderContext context, DoubleValues scores) throws IOException {
+            NumericDocValues timestamps = DocValues.getNumeric(context.reader(), TIMESTAMP);
+            return new DoubleValues() {
+                private long timestamp;
+
+                @Override
+                public double doubleValue() {
+                    double age = Math.max(0, asOf - timestamp);
+                    return 0.5 + 0.5 * Math.pow(2, -age / halfLife);
+                }
+
+                @Override
+                public boolean advanceExact(int doc) throws IOException {
+                    timestamp = timestamps.advanceExact(doc) ? timestamps.longValue() : asOf;
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+
+        @Override
+        public DoubleValuesSource rewrite(IndexSearcher searcher) {
+            return this;
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext context) {
+            return DocValues.isCacheable(context, TIMESTAMP);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Recency))
+                return false;
+            Recency recency = (Recency) other;
+            return asOf == recency.asOf && halfLife == recency.halfLife;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(asOf, halfLife);
+        }
+
+        @Override
+        public String toString() {
+            return "recency(" + TIMESTAMP + ", asOf=" + asOf + ", halfLife=" + halfLife + ")";
+        }
+    }
+}
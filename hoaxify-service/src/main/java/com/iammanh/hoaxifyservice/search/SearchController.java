@@ -0,0 +1,31 @@
+package com.iammanh.hoaxifyservice.search;
+
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxSliceVM;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1")
+public class SearchController {
+
+    private static final int MAX_SLICE_LIMIT = 100;
+
+    private final HoaxSearchService hoaxSearchService;
+
+    @GetMapping("/hoaxes/search")
+    public ResponseEntity<HoaxSliceVM> searchHoaxes(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor
+    ) throws IOException {
+        int clamped = Math.max(1, Math.min(limit, MAX_SLICE_LIMIT));
+        return ResponseEntity.ok(hoaxSearchService.search(q, cursor, clamped));
+    }
+}
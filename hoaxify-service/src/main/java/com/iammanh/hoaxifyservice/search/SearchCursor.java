@@ -0,0 +1,37 @@
+package com.iammanh.hoaxifyservice.search;
+
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor of a search. Besides the score and id of the last hit it pins the
+ * time recency is measured from and the newest hoax of the first page, so every page of a
+ * search ranks the same hoaxes the same way.
+ */
+@Value
+class SearchCursor {
+    private long asOf;
+    private long maxId;
+    private float score;
+    private long id;
+
+    String encode() {
+        String value = asOf + "." + maxId + "." + Integer.toHexString(Float.floatToIntBits(score)) + "." + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static SearchCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\.");
+            if (parts.length != 4)
+                throw new IllegalArgumentException(cursor);
+            return new SearchCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    Float.intBitsToFloat(Integer.parseUnsignedInt(parts[2], 16)), Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
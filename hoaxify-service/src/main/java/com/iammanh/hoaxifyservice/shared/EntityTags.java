@@ -0,0 +1,33 @@
+package com.iammanh.hoaxifyservice.shared;
+
+import java.security.SecureRandom;
+
+/**
+ * Weak entity tags.
+ * <p>
+ * Tags of responses answered from in-memory state start with a random id of this process,
+ * so a tag handed out by another instance or before a restart never matches, even when its
+ * counters are equal. Tags derived from the database alone are the same on every instance.
+ */
+public final class EntityTags {
+
+    private static final String PROCESS = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+
+    private EntityTags() {
+    }
+
+    public static String weak(Object... parts) {
+        return build(PROCESS, parts);
+    }
+
+    public static String shared(Object... parts) {
+        return build("db", parts);
+    }
+
+    private static String build(String prefix, Object... parts) {
+        StringBuilder tag = new StringBuilder("W/\"").append(prefix);
+        for (Object part : parts)
+            tag.append('-').append(part);
+        return tag.append('"').toString();
+    }
+}
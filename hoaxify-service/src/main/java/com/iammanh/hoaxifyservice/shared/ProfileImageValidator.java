@@ -8,6 +8,8 @@ import java.util.Base64;
 
 public class ProfileImageValidator implements ConstraintValidator<ProfileImage, String> {
 
+    private static final int DETECTION_PREFIX_LENGTH = FileService.DETECTION_HEADER_SIZE / 3 * 4;
+
     private final FileService fileService;
 
     public ProfileImageValidator(FileService fileService) {
@@ -19,10 +21,12 @@ public class ProfileImageValidator implements ConstraintValidator<ProfileImage,
         if(base64Image == null)
             return true;
         try {
-            byte[] decodedImageFile = Base64.getDecoder().decode(base64Image);
+            String prefix = base64Image.length() > DETECTION_PREFIX_LENGTH
+                    ? base64Image.substring(0, DETECTION_PREFIX_LENGTH)
+                    : base64Image;
+            byte[] decodedImageFile = Base64.getDecoder().decode(prefix);
             String fileType = fileService.detectType(decodedImageFile);
-            return fileType.equalsIgnoreCase("image/png")
-                    || fileType.equalsIgnoreCase("image/jpeg");
+            return fileService.isSupportedProfileImage(fileType);
         } catch (Exception e) {
             return false;
         }
@@ -1,6 +1,8 @@
 package com.iammanh.hoaxifyservice.shared;
 
 import com.iammanh.hoaxifyservice.error.ApiError;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -8,15 +10,21 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.ResourceBundle;
 
 @RestControllerAdvice
 public class RestExceptionHandler {
 
+    private static final String UNIQUE_USERNAME_CONSTRAINT = "uk_user_username";
+    private static final String UNIQUE_USERNAME_MESSAGE = "hoaxify.validation.constraints.username.UniqueUsername.message";
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiError> handleMethodArgumentNotValidException(
             MethodArgumentNotValidException e, HttpServletRequest request) {
@@ -37,4 +45,42 @@ public class RestExceptionHandler {
                 );
     }
 
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ApiError> handleDataIntegrityViolationException(
+            DataIntegrityViolationException e, HttpServletRequest request) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage());
+        if (!cause.toLowerCase().contains(UNIQUE_USERNAME_CONSTRAINT)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiError.builder()
+                            .status(HttpStatus.CONFLICT.value())
+                            .url(request.getRequestURI())
+                            .message("Conflicting data")
+                            .build()
+                    );
+        }
+
+        String message = ResourceBundle.getBundle("ValidationMessages", LocaleContextHolder.getLocale())
+                .getString(UNIQUE_USERNAME_MESSAGE);
+        return ResponseEntity.badRequest()
+                .body(ApiError.builder()
+                        .status(HttpStatus.BAD_REQUEST.value())
+                        .url(request.getRequestURI())
+                        .message("Validation error")
+                        .validationErrors(Collections.singletonMap("username", message))
+                        .build()
+                );
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ApiError> handleMaxUploadSizeExceededException(
+            MaxUploadSizeExceededException e, HttpServletRequest request) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(ApiError.builder()
+                        .status(HttpStatus.PAYLOAD_TOO_LARGE.value())
+                        .url(request.getRequestURI())
+                        .message("Upload is too large")
+                        .build()
+                );
+    }
+
 }
@@ -0,0 +1,107 @@
+package com.iammanh.hoaxifyservice.sql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The statements one HTTP request executed on its thread, with their total and slowest
+ * execution time. Statements are kept as sent and only normalized when they are shown.
+ */
+public class RequestSql {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final String request;
+    private final List<String> statements = new ArrayList<>();
+    private long nanos;
+    private long slowestNanos = -1;
+    private String slowest;
+    private long statementStart;
+
+    RequestSql(String request) {
+        this.request = request;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public synchronized int getStatementCount() {
+        return statements.size();
+    }
+
+    public synchronized long getMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    public synchronized long getNanos() {
+        return nanos;
+    }
+
+    public synchronized long getSlowestMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowestNanos);
+    }
+
+    public synchronized String getSlowest() {
+        return slowest == null ? null : normalize(slowest);
+    }
+
+    /**
+     * @return the normalized statements in the order they were executed
+     */
+    public synchronized List<String> getStatements() {
+        List<String> normalized = new ArrayList<>(statements.size());
+        for (String statement : statements)
+            normalized.add(normalize(statement));
+        return normalized;
+    }
+
+    /**
+     * @return one line per distinct normalized statement with how often it was executed, repeated lines hint at N+1 selects
+     */
+    public String describe() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String statement : getStatements())
+            counts.merge(statement, 1, Integer::sum);
+        StringBuilder description = new StringBuilder(request)
+                .append(": ").append(getStatementCount()).append(" statements in ").append(getMillis()).append(" ms");
+        String slowestStatement = getSlowest();
+        if (slowestStatement != null)
+            description.append(", slowest ").append(getSlowestMillis()).append(" ms: ").append(slowestStatement);
+        counts.forEach((statement, count) -> description.append(System.lineSeparator())
+                .append("  ").append(count).append("x ").append(statement));
+        return description.toString();
+    }
+
+    synchronized void started() {
+        statementStart = System.nanoTime();
+    }
+
+    synchronized void finished(String sql) {
+        long elapsed = System.nanoTime() - statementStart;
+        statements.add(sql);
+        nanos += elapsed;
+        if (elapsed > slowestNanos) {
+            slowestNanos = elapsed;
+            slowest = sql;
+        }
+    }
+
+    /**
+     * Collapses whitespace and replaces literals and parameter lists with a single {@code ?},
+     * so the same query with different values reads the same.
+     */
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = PARAMETER_LIST.matcher(normalized).replaceAll("(?)");
+        return WHITESPACE.matcher(normalized.trim()).replaceAll(" ");
+    }
+}
@@ -0,0 +1,48 @@
+package com.iammanh.hoaxifyservice.sql;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+/**
+ * Puts the application's {@code dataSource} behind a datasource-proxy that reports every
+ * statement to {@link SqlRecorder}, and checks API requests against the SQL budget before
+ * anything else runs, so authentication lookups count too.
+ */
+@Configuration
+public class SqlBudgetConfiguration {
+
+    private static final String DATA_SOURCE = "dataSource";
+
+    @Bean
+    public static BeanPostProcessor sqlRecordingDataSource(ObjectProvider<SqlRecorder> sqlRecorder) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || !DATA_SOURCE.equals(beanName))
+                    return bean;
+                return ProxyDataSourceBuilder.create(DATA_SOURCE, (DataSource) bean)
+                        .listener(sqlRecorder.getObject())
+                        .build();
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlBudgetFilter> sqlBudgetFilter(SqlRecorder sqlRecorder, MeterRegistry meterRegistry,
+                                                                   AppConfiguration appConfiguration) {
+        FilterRegistrationBean<SqlBudgetFilter> registration = new FilterRegistrationBean<>(new SqlBudgetFilter(
+                sqlRecorder, meterRegistry, appConfiguration.getSqlBudgetStatements(), appConfiguration.getSqlBudgetTime()));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,76 @@
+package com.iammanh.hoaxifyservice.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the SQL of every API request and logs the requests that execute more than
+ * {@code hoaxify.sql-budget-statements} statements or spend more than
+ * {@code hoaxify.sql-budget-time} milliseconds in them, with their normalized statements.
+ * <p>
+ * The number of statements and the time spent in them are also exported per request and
+ * endpoint, whatever the number of sessions and transactions the request went through.
+ */
+public class SqlBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlBudgetFilter.class);
+
+    private final SqlRecorder sqlRecorder;
+    private final MeterRegistry meterRegistry;
+    private final int maxStatements;
+    private final long maxMillis;
+
+    public SqlBudgetFilter(SqlRecorder sqlRecorder, MeterRegistry meterRegistry, int maxStatements, long maxMillis) {
+        this.sqlRecorder = sqlRecorder;
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestSql sql = sqlRecorder.start(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            sqlRecorder.stop();
+            record(request, sql);
+            if (sql.getStatementCount() > maxStatements || sql.getMillis() > maxMillis)
+                log.warn("Over the SQL budget of {} statements and {} ms, {}", maxStatements, maxMillis, sql.describe());
+        }
+    }
+
+    private void record(HttpServletRequest request, RequestSql sql) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder("hoaxify.request.sql.statements")
+                .description("JDBC statements executed by one API request")
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(1000L)
+                .register(meterRegistry)
+                .record(sql.getStatementCount());
+        Timer.builder("hoaxify.request.sql.time")
+                .description("Time one API request spent executing JDBC statements")
+                .tag("uri", uri)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry)
+                .record(sql.getNanos(), TimeUnit.NANOSECONDS);
+    }
+}
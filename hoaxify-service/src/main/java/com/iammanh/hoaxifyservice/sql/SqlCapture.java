@@ -0,0 +1,58 @@
+package com.iammanh.hoaxifyservice.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The requests started while it is open, for tests that keep endpoints within a number of
+ * statements:
+ * <pre>
+ * try (SqlCapture capture = sqlRecorder.capture()) {
+ *     testRestTemplate.getForEntity("/api/v1/hoaxes?limit=5", String.class);
+ *     capture.assertStatementsAtMost(1);
+ * }
+ * </pre>
+ * A request is added when it starts and fills in while it runs, its statements are counted
+ * by the time its response arrives.
+ */
+public class SqlCapture implements AutoCloseable {
+
+    private final SqlRecorder recorder;
+    private final List<RequestSql> requests = new CopyOnWriteArrayList<>();
+
+    SqlCapture(SqlRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public List<RequestSql> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    public int getStatementCount() {
+        return requests.stream().mapToInt(RequestSql::getStatementCount).sum();
+    }
+
+    /**
+     * @throws AssertionError listing the statements of every captured request when they add up to more than {@code max}
+     */
+    public void assertStatementsAtMost(int max) {
+        int count = getStatementCount();
+        if (count <= max)
+            return;
+        StringBuilder message = new StringBuilder("Expected at most ").append(max).append(" statements but ")
+                .append(count).append(" were executed");
+        for (RequestSql request : requests)
+            message.append(System.lineSeparator()).append(request.describe());
+        throw new AssertionError(message.toString());
+    }
+
+    @Override
+    public void close() {
+        recorder.release(this);
+    }
+
+    void add(RequestSql request) {
+        requests.add(request);
+    }
+}
@@ -0,0 +1,60 @@
+package com.iammanh.hoaxifyservice.sql;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Attributes the statements going through the application's data source to the HTTP
+ * request running on the same thread, see {@link SqlBudgetFilter}. Statements on other
+ * threads, like background image writes, are not recorded.
+ */
+@Component
+public class SqlRecorder implements QueryExecutionListener {
+
+    private final ThreadLocal<RequestSql> current = new ThreadLocal<>();
+    private final List<SqlCapture> captures = new CopyOnWriteArrayList<>();
+
+    public RequestSql start(String request) {
+        RequestSql sql = new RequestSql(request);
+        current.set(sql);
+        for (SqlCapture capture : captures)
+            capture.add(sql);
+        return sql;
+    }
+
+    public void stop() {
+        current.remove();
+    }
+
+    /**
+     * @return a capture of the requests started from now until it is closed
+     */
+    public SqlCapture capture() {
+        SqlCapture capture = new SqlCapture(this);
+        captures.add(capture);
+        return capture;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+        RequestSql sql = current.get();
+        if (sql != null)
+            sql.started();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+        RequestSql sql = current.get();
+        if (sql != null)
+            sql.finished(queries.isEmpty() ? "" : queries.get(0).getQuery());
+    }
+
+    void release(SqlCapture capture) {
+        captures.remove(capture);
+    }
+}
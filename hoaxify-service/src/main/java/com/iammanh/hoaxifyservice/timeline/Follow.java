@@ -0,0 +1,20 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(name = "idx_follow_followee_id", columnList = "followee_id, follower_id"))
+public class Follow {
+    @EmbeddedId
+    private FollowId id;
+}
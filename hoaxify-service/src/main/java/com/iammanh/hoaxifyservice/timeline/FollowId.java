@@ -0,0 +1,17 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+@Data
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+public class FollowId implements Serializable {
+    private long followerId;
+    private long followeeId;
+}
@@ -0,0 +1,21 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface FollowRepository extends JpaRepository<Follow, FollowId> {
+
+    @Query("select u.id from Follow f, User u where u.id = f.id.followeeId and f.id.followerId = :followerId and u.followerCount > :limit")
+    List<Long> findFolloweesWithMoreFollowersThan(@Param("followerId") long followerId, @Param("limit") long limit);
+
+    @Query("select u.followerCount from User u where u.id = :userId")
+    long getFollowerCount(@Param("userId") long userId);
+
+    @Modifying
+    @Query(value = "update user set follower_count = follower_count + :delta where id = :userId", nativeQuery = true)
+    void addFollowers(@Param("userId") long userId, @Param("delta") long delta);
+}
@@ -0,0 +1,43 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import com.iammanh.hoaxifyservice.hoax.HoaxCursor;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxSliceVM;
+import com.iammanh.hoaxifyservice.shared.CurrentUser;
+import com.iammanh.hoaxifyservice.shared.GenericApiResponse;
+import com.iammanh.hoaxifyservice.user.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1")
+public class TimelineController {
+
+    private static final int MAX_SLICE_LIMIT = 100;
+
+    private final TimelineService timelineService;
+
+    @PostMapping("/users/{username}/followers")
+    public ResponseEntity<GenericApiResponse> follow(@PathVariable String username, @CurrentUser User loggedInUser) {
+        timelineService.follow(loggedInUser, username);
+        return ResponseEntity.ok(new GenericApiResponse("Following " + username));
+    }
+
+    @DeleteMapping("/users/{username}/followers")
+    public ResponseEntity<GenericApiResponse> unfollow(@PathVariable String username, @CurrentUser User loggedInUser) {
+        timelineService.unfollow(loggedInUser, username);
+        return ResponseEntity.ok(new GenericApiResponse("Unfollowed " + username));
+    }
+
+    @GetMapping("/timeline")
+    public ResponseEntity<HoaxSliceVM> getTimeline(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) String cursor,
+            @CurrentUser User loggedInUser
+    ) {
+        int clamped = Math.max(1, Math.min(limit, MAX_SLICE_LIMIT));
+        return ResponseEntity.ok(HoaxSliceVM.of(timelineService.getTimeline(loggedInUser, HoaxCursor.resolve(before, cursor), clamped)));
+    }
+}
@@ -0,0 +1,23 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * A hoax pushed into the home timeline of a user, either their own or one of a followee.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = @Index(name = "idx_timeline_entry_user_id_hoax_id", columnList = "user_id, hoax_id desc"))
+public class TimelineEntry {
+    @EmbeddedId
+    private TimelineEntryId id;
+}
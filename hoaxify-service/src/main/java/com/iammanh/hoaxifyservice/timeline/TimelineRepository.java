@@ -0,0 +1,52 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * The writes are single statements so pushing a hoax to thousands of followers costs one
+ * round trip and no entities are loaded. Each runs in a read-write transaction of its own
+ * when called outside of one. The fan-out and the backfill of a follow can race for the
+ * same entry, so the inserts skip entries that already exist.
+ */
+public interface TimelineRepository extends JpaRepository<TimelineEntry, TimelineEntryId> {
+
+    @Query("select h from TimelineEntry t, Hoax h join fetch h.user left join fetch h.attachment "
+            + "where h.id = t.id.hoaxId and t.id.userId = :userId and t.id.hoaxId < :before order by t.id.hoaxId desc")
+    List<Hoax> findTimeline(@Param("userId") long userId, @Param("before") long before, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into timeline_entry (user_id, hoax_id) "
+            + "select h.user_id, h.id from hoax h where h.id in (:hoaxIds) "
+            + "and not exists (select 1 from timeline_entry t where t.user_id = h.user_id and t.hoax_id = h.id)", nativeQuery = true)
+    int addToAuthor(@Param("hoaxIds") List<Long> hoaxIds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into timeline_entry (user_id, hoax_id) "
+            + "select f.follower_id, h.id from follow f, hoax h where f.followee_id = :authorId and h.id in (:hoaxIds) "
+            + "and not exists (select 1 from timeline_entry t where t.user_id = f.follower_id and t.hoax_id = h.id)", nativeQuery = true)
+    int fanOut(@Param("hoaxIds") List<Long> hoaxIds, @Param("authorId") long authorId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into timeline_entry (user_id, hoax_id) "
+            + "select :followerId, h.id from hoax h where h.user_id = :followeeId "
+            + "and not exists (select 1 from timeline_entry t where t.user_id = :followerId and t.hoax_id = h.id) "
+            + "order by h.id desc limit :count", nativeQuery = true)
+    int backfill(@Param("followerId") long followerId, @Param("followeeId") long followeeId, @Param("count") int count);
+
+    @Modifying
+    @Transactional
+    @Query(value = "delete from timeline_entry where user_id = :followerId "
+            + "and hoax_id in (select id from hoax where user_id = :followeeId)", nativeQuery = true)
+    int removeAuthor(@Param("followerId") long followerId, @Param("followeeId") long followeeId);
+}
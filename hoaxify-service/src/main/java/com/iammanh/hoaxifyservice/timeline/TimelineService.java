@@ -0,0 +1,172 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxesCreatedEvent;
+import com.iammanh.hoaxifyservice.hoax.HoaxRepository;
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Home timelines, the hoaxes of a user and of everyone they follow.
+ * <p>
+ * Timelines are precomputed: a new hoax is pushed as a {@link TimelineEntry} to its author
+ * and all of their followers, so reading a timeline is one range scan over
+ * {@code (user_id, hoax_id)}. Authors with more than {@code hoaxify.timeline-fan-out-limit}
+ * followers are not pushed to their followers, their hoaxes are merged in when a timeline
+ * is read instead. A new follow copies the latest {@code hoaxify.timeline-backfill} hoaxes
+ * of the followee, an unfollow removes all of them.
+ */
+@Service
+public class TimelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineService.class);
+
+    private final FollowRepository followRepository;
+    private final TimelineRepository timelineRepository;
+    private final HoaxRepository hoaxRepository;
+    private final UserService userService;
+    private final AppConfiguration appConfiguration;
+    private final TransactionTemplate transactionTemplate;
+
+    public TimelineService(FollowRepository followRepository, TimelineRepository timelineRepository,
+                           HoaxRepository hoaxRepository, UserService userService, AppConfiguration appConfiguration,
+                           PlatformTransactionManager transactionManager) {
+        this.followRepository = followRepository;
+        this.timelineRepository = timelineRepository;
+        this.hoaxRepository = hoaxRepository;
+        this.userService = userService;
+        this.appConfiguration = appConfiguration;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * The follow is committed before the backfill runs, so a hoax posted meanwhile is either
+     * fanned out to the new follower or backfilled, and a failing backfill keeps the follow.
+     */
+    public void follow(User follower, String username) {
+        User followee = userService.getUserByUsername(username);
+        if (followee.getId() == follower.getId())
+            throw new BadRequestException("Users cannot follow themselves");
+        FollowId id = new FollowId(follower.getId(), followee.getId());
+        boolean followed = transactionTemplate.execute(status -> {
+            if (followRepository.existsById(id))
+                return false;
+            followRepository.save(new Follow(id));
+            followRepository.addFollowers(followee.getId(), 1);
+            return true;
+        });
+        if (followed && !fansOutOnRead(followee.getId()))
+            insertSkippingExisting("backfill of " + followee.getId() + " for " + follower.getId(),
+                    () -> timelineRepository.backfill(follower.getId(), followee.getId(), appConfiguration.getTimelineBackfill()));
+    }
+
+    @Transactional
+    public void unfollow(User follower, String username) {
+        User followee = userService.getUserByUsername(username);
+        FollowId id = new FollowId(follower.getId(), followee.getId());
+        if (!followRepository.existsById(id))
+            return;
+        followRepository.deleteById(id);
+        followRepository.addFollowers(followee.getId(), -1);
+        timelineRepository.removeAuthor(follower.getId(), followee.getId());
+    }
+
+    /**
+     * Runs after the hoaxes are saved and streamed, so a failing fan-out is logged instead of
+     * failing the post. The author's entries are written in a transaction of their own and
+     * are kept either way.
+     */
+    @EventListener
+    public void onHoaxesCreated(HoaxesCreatedEvent event) {
+        try {
+            timelineRepository.addToAuthor(event.getHoaxIds());
+            if (!fansOutOnRead(event.getAuthorId()))
+                insertSkippingExisting("fan-out of " + event.getHoaxIds(),
+                        () -> timelineRepository.fanOut(event.getHoaxIds(), event.getAuthorId()));
+        } catch (DataAccessException e) {
+            log.warn("Timeline entries of hoaxes {} were not written", event.getHoaxIds(), e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Slice<Hoax> getTimeline(User user, Long before, int limit) {
+        long seek = before == null ? Long.MAX_VALUE : before;
+        List<Hoax> hoaxes = timelineRepository.findTimeline(user.getId(), seek, PageRequest.of(0, limit + 1));
+
+        List<Long> pulledFollowees = followRepository.findFolloweesWithMoreFollowersThan(user.getId(), appConfiguration.getTimelineFanOutLimit());
+        if (!pulledFollowees.isEmpty()) {
+            Specification<Hoax> spec = Specification.where(authorIn(pulledFollowees)).and(idLessThan(seek));
+            hoaxes = merge(hoaxes, hoaxRepository.findNewestFirst(spec, limit + 1), limit + 1);
+        }
+
+        boolean hasNext = hoaxes.size() > limit;
+        return new SliceImpl<>(hasNext ? hoaxes.subList(0, limit) : hoaxes, PageRequest.of(0, limit), hasNext);
+    }
+
+    /**
+     * The inserts skip existing entries, but one inserted by a concurrent transaction that
+     * had not committed yet still breaks the primary key and rolls the whole statement back.
+     * It is then run once more, by which time that entry is visible and skipped.
+     */
+    private void insertSkippingExisting(String description, Supplier<Integer> insert) {
+        try {
+            insert.get();
+        } catch (DataIntegrityViolationException first) {
+            try {
+                insert.get();
+            } catch (DataAccessException e) {
+                log.warn("Timeline {} failed", description, e);
+            }
+        }
+    }
+
+    /**
+     * Authors over the limit keep their hoaxes out of follower timelines, which are then read from the hoax table.
+     */
+    private boolean fansOutOnRead(long authorId) {
+        return followRepository.getFollowerCount(authorId) > appConfiguration.getTimelineFanOutLimit();
+    }
+
+    /**
+     * Both lists are newest first, a hoax pushed before its author crossed the limit can be in both.
+     */
+    private static List<Hoax> merge(List<Hoax> pushed, List<Hoax> pulled, int limit) {
+        if (pulled.isEmpty())
+            return pushed;
+        NavigableMap<Long, Hoax> merged = new TreeMap<>(Collections.reverseOrder());
+        pushed.forEach(hoax -> merged.put(hoax.getId(), hoax));
+        pulled.forEach(hoax -> merged.putIfAbsent(hoax.getId(), hoax));
+        List<Hoax> newest = new ArrayList<>(merged.values());
+        return newest.size() > limit ? newest.subList(0, limit) : newest;
+    }
+
+    private static Specification<Hoax> authorIn(List<Long> authorIds) {
+        return (Specification<Hoax>) (root, query, builder) -> root.get("user").get("id").in(authorIds);
+    }
+
+    private static Specification<Hoax> idLessThan(long id) {
+        return (Specification<Hoax>) (root, query, builder) -> builder.lessThan(root.get("id"), id);
+    }
+}
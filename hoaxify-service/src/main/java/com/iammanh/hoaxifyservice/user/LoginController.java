@@ -1,24 +1,59 @@
 package com.iammanh.hoaxifyservice.user;
 
+import com.iammanh.hoaxifyservice.configuration.TokenClaims;
+import com.iammanh.hoaxifyservice.configuration.TokenService;
+import com.iammanh.hoaxifyservice.error.UnauthorizedException;
 import com.iammanh.hoaxifyservice.shared.CurrentUser;
-import com.iammanh.hoaxifyservice.user.vm.UserVM;
-import org.apache.commons.io.FileUtils;
-import org.apache.http.HttpResponse;
-import org.springframework.core.io.ClassPathResource;
+import com.iammanh.hoaxifyservice.shared.GenericApiResponse;
+import com.iammanh.hoaxifyservice.user.vm.LoginVM;
+import com.iammanh.hoaxifyservice.user.vm.TokenVM;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.servlet.http.HttpServletResponse;
-import java.io.File;
-import java.io.IOException;
-
 @RestController
 public class LoginController {
 
+    private final TokenService tokenService;
+
+    public LoginController(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
     @PostMapping("/api/v1/login")
-    public ResponseEntity<UserVM> handleLogin(@CurrentUser User loggedInUser) {
-        return ResponseEntity.ok(new UserVM(loggedInUser));
+    public ResponseEntity<LoginVM> handleLogin(@CurrentUser User loggedInUser) {
+        return ResponseEntity.ok(new LoginVM(
+                loggedInUser,
+                tokenService.createAccessToken(loggedInUser),
+                tokenService.createRefreshToken(loggedInUser)
+        ));
+    }
+
+    @PostMapping("/api/v1/login/refresh")
+    public ResponseEntity<TokenVM> handleRefresh(@RequestBody TokenVM tokenVM) {
+        return tokenService.verify(tokenVM.getRefreshToken(), TokenClaims.Type.REFRESH)
+                .filter(tokenService::revoke)
+                .map(claims -> {
+                    User user = claims.toPrincipal();
+                    return ResponseEntity.ok(new TokenVM(
+                            tokenService.createAccessToken(user),
+                            tokenService.createRefreshToken(user)
+                    ));
+                })
+                .orElseThrow(() -> new UnauthorizedException("Invalid refresh token"));
+    }
+
+    @PostMapping("/api/v1/logout")
+    public ResponseEntity<GenericApiResponse> handleLogout(Authentication authentication, @CurrentUser User loggedInUser,
+                                                           @RequestBody(required = false) TokenVM tokenVM) {
+        if (authentication.getCredentials() instanceof TokenClaims)
+            tokenService.revoke((TokenClaims) authentication.getCredentials());
+        if (tokenVM != null)
+            tokenService.verify(tokenVM.getRefreshToken(), TokenClaims.Type.REFRESH)
+                    .filter(claims -> claims.getUserId() == loggedInUser.getId())
+                    .ifPresent(tokenService::revoke);
+        return ResponseEntity.ok(new GenericApiResponse("Logged out"));
     }
 }
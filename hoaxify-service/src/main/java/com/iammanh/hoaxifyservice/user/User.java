@@ -1,6 +1,7 @@
 package com.iammanh.hoaxifyservice.user;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import com.iammanh.hoaxifyservice.hoax.Hoax;
 import lombok.Data;
@@ -17,14 +18,15 @@ import java.util.List;
 
 @Data
 @Entity
+@Table(indexes = @Index(name = "uk_user_username", columnList = "username", unique = true))
 public class User implements UserDetails {
     @Id
     @GeneratedValue
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private long id;
 
     @NotNull(message = "{hoaxify.validation.constraints.username.NotNull.message}")
     @Size(min = 4, max = 255)
-    @UniqueUsername
     private String username;
 
     @NotNull
@@ -41,6 +43,17 @@ public class User implements UserDetails {
     @OneToMany(mappedBy = "user")
     private List<Hoax> hoaxes;
 
+    /**
+     * Maintained by the follow and unfollow statements only, never written from the entity.
+     */
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private long followerCount;
+
+    @Version
+    @JsonIgnore
+    private long version;
+
     @Override
     @Transient
     @JsonIgnore
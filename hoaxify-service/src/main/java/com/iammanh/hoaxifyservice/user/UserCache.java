@@ -0,0 +1,66 @@
+package com.iammanh.hoaxifyservice.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Username to user snapshot cache in front of {@link UserRepository#findByUsername(String)}.
+ * <p>
+ * Cached users are detached copies holding only the column values, they are shared
+ * between requests and must not be modified.
+ */
+@Component
+public class UserCache {
+
+    private final Cache<String, User> cache;
+
+    public UserCache(AppConfiguration appConfiguration, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(appConfiguration.getUserCacheSize())
+                .expireAfterWrite(appConfiguration.getUserCacheTtl(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    /**
+     * @return the cached user, or the one found by {@code loader}; {@code null} results are not cached
+     */
+    public User get(String username, Function<String, User> loader) {
+        return cache.get(username, name -> {
+            User user = loader.apply(name);
+            return user == null ? null : snapshot(user);
+        });
+    }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static User snapshot(User user) {
+        User snapshot = new User();
+        snapshot.setId(user.getId());
+        snapshot.setUsername(user.getUsername());
+        snapshot.setDisplayName(user.getDisplayName());
+        snapshot.setImage(user.getImage());
+        snapshot.setPassword(user.getPassword());
+        snapshot.setVersion(user.getVersion());
+        return snapshot;
+    }
+}
@@ -6,18 +6,24 @@ import com.iammanh.hoaxifyservice.shared.GenericApiResponse;
 import com.iammanh.hoaxifyservice.user.vm.UserUpdateVM;
 import com.iammanh.hoaxifyservice.user.vm.UserVM;
 import lombok.RequiredArgsConstructor;
+import org.apache.tika.mime.MimeTypeException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +34,8 @@ import java.util.Map;
 @RequestMapping("/api/v1")
 public class UserController {
 
+    private static final int MAX_SUGGEST_LIMIT = 50;
+
     private final UserService userService;
 
     @PostMapping("/users")
@@ -39,14 +47,26 @@ public class UserController {
     }
 
     @GetMapping("/users")
-    public ResponseEntity<Page<UserVM>> getUsers(Pageable pageable, @CurrentUser User loggedInUser) {
+    public ResponseEntity<Page<UserVM>> getUsers(Pageable pageable, @CurrentUser User loggedInUser, WebRequest request) {
+        if (request.checkNotModified(userService.getUsersTag(loggedInUser)))
+            return null;
         Page<UserVM> userVMPage = userService.getUsers(loggedInUser, pageable).map(UserVM::new);
         return ResponseEntity.ok(userVMPage);
     }
 
+    @GetMapping(value = "/users/suggest", params = "prefix")
+    public ResponseEntity<List<UserVM>> suggestUsers(@RequestParam String prefix,
+                                                     @RequestParam(defaultValue = "10") int limit,
+                                                     @CurrentUser User loggedInUser) {
+        int clamped = Math.max(1, Math.min(limit, MAX_SUGGEST_LIMIT));
+        return ResponseEntity.ok(userService.suggest(prefix, clamped, loggedInUser));
+    }
+
     @GetMapping("/users/{username}")
-    public ResponseEntity<UserVM> getUsers(@PathVariable String username) {
+    public ResponseEntity<UserVM> getUsers(@PathVariable String username, WebRequest request) {
         User user = userService.getUserByUsername(username);
+        if (request.checkNotModified(userService.getUserTag(user)))
+            return null;
         return ResponseEntity.ok(new UserVM(user));
     }
 
@@ -56,4 +76,13 @@ public class UserController {
         User updateUser = userService.update(id, userUpdateVM);
         return ResponseEntity.ok(new UserVM(updateUser));
     }
+
+    @PutMapping(value = "/users/{id:[0-9]+}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("#id == principal.id")
+    public ResponseEntity<UserVM> updateImage(@PathVariable Long id, @RequestParam("image") MultipartFile image) throws IOException, MimeTypeException {
+        try (InputStream imageStream = image.getInputStream()) {
+            User updateUser = userService.updateImage(id, imageStream);
+            return ResponseEntity.ok(new UserVM(updateUser));
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package com.iammanh.hoaxifyservice.user;
+
+/**
+ * Aggregates of the user table that change with every signup, removal and profile update.
+ */
+public interface UserListVersion {
+    long getCount();
+
+    Long getMaxId();
+
+    Long getVersions();
+}
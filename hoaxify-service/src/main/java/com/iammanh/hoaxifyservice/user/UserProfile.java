@@ -0,0 +1,16 @@
+package com.iammanh.hoaxifyservice.user;
+
+/**
+ * The columns of a user a profile update reads before its conditional write.
+ */
+public interface UserProfile {
+    long getId();
+
+    String getUsername();
+
+    String getDisplayName();
+
+    String getImage();
+
+    long getVersion();
+}
@@ -3,10 +3,40 @@ package com.iammanh.hoaxifyservice.user;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     Page<User> findByUsernameNot(String username, Pageable pageable);
+
+    /**
+     * Oldest first from {@code after} on, for walking the whole table in keyset pages.
+     */
+    @Query("select u from User u where u.id > :after order by u.id")
+    List<User> findOldestFirstAfter(@Param("after") long after, Pageable pageable);
+
+    @Query("select count(u) as count, max(u.id) as maxId, sum(u.version) as versions from User u")
+    UserListVersion getListVersion();
+
+    /**
+     * Read from the primary database, its version is what {@link #updateProfile} compares
+     * against right after.
+     */
+    @Transactional
+    Optional<UserProfile> findProfileById(long id);
+
+    /**
+     * @return 1 when the row still had {@code version}, 0 when another update changed it first
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.displayName = :displayName, u.image = :image, u.version = u.version + 1 where u.id = :id and u.version = :version")
+    int updateProfile(@Param("id") long id, @Param("version") long version,
+                      @Param("displayName") String displayName, @Param("image") String image);
 }
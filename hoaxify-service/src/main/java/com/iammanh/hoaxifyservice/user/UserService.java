@@ -1,57 +1,155 @@
 package com.iammanh.hoaxifyservice.user;
 
+import com.iammanh.hoaxifyservice.configuration.AuthenticationCache;
+import com.iammanh.hoaxifyservice.error.ConflictException;
 import com.iammanh.hoaxifyservice.error.NotFoundException;
 import com.iammanh.hoaxifyservice.file.FileService;
+import com.iammanh.hoaxifyservice.shared.EntityTags;
 import com.iammanh.hoaxifyservice.user.vm.UserUpdateVM;
+import com.iammanh.hoaxifyservice.user.vm.UserVM;
 import lombok.RequiredArgsConstructor;
 import org.apache.tika.mime.MimeTypeException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
+    private static final int SUGGEST_INDEX_BATCH = 1000;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final FileService fileService;
-
+    private final AuthenticationCache authenticationCache;
+    private final UserCache userCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserSuggestIndex userSuggestIndex;
     public User save(User user) {
         String encryptedPassword = passwordEncoder.encode(user.getPassword());
         user.setPassword(encryptedPassword);
         userRepository.save(user);
+        authenticationCache.evict(user.getUsername());
+        userCache.invalidate(user.getUsername());
+        userSuggestIndex.put(user);
         return user;
     }
 
+    @Transactional(readOnly = true)
     public Page<User> getUsers(User loggedInUser, Pageable pageable) {
         return loggedInUser == null
                 ? userRepository.findAll(pageable)
                 : userRepository.findByUsernameNot(loggedInUser.getUsername(), pageable);
     }
 
+    /**
+     * A weak ETag of every page of {@link #getUsers} for {@code loggedInUser}, from one
+     * aggregate query instead of the page and its count.
+     */
+    public String getUsersTag(User loggedInUser) {
+        UserListVersion version = userRepository.getListVersion();
+        return EntityTags.shared(version.getCount(), version.getMaxId(), version.getVersions(),
+                loggedInUser == null ? 0 : loggedInUser.getId());
+    }
+
+    /**
+     * A weak ETag of the {@link UserVM} of {@code user}.
+     */
+    public String getUserTag(User user) {
+        return EntityTags.shared(user.getId(), user.getVersion());
+    }
+
+    public List<UserVM> suggest(String prefix, int limit, User loggedInUser) {
+        return userSuggestIndex.suggest(prefix, limit, loggedInUser == null ? null : loggedInUser.getId());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildSuggestIndex() {
+        userSuggestIndex.clear();
+        long after = 0;
+        List<User> users;
+        do {
+            users = userRepository.findOldestFirstAfter(after, PageRequest.of(0, SUGGEST_INDEX_BATCH));
+            for (User user : users) {
+                userSuggestIndex.put(user);
+                after = user.getId();
+            }
+        } while (users.size() == SUGGEST_INDEX_BATCH);
+    }
+
     public User getUserByUsername(String username) {
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new NotFoundException(username + " not found"));
+        User user = userCache.get(username, name -> userRepository.findByUsername(name).orElse(null));
+        if (user == null)
+            throw new NotFoundException(username + " not found");
+        return user;
     }
 
     public User update(Long id, UserUpdateVM userUpdateVM) {
-        User user = userRepository.getOne(id);
-        user.setDisplayName(userUpdateVM.getDisplayName());
-        String userUpdateVMImage = userUpdateVM.getImage();
-        if (userUpdateVMImage != null) {
+        String newImage = null;
+        if (userUpdateVM.getImage() != null) {
             try {
-                String saveImageName = fileService.saveProfileImage(userUpdateVMImage);
-                fileService.deleteProfileImage(user.getImage());
-                user.setImage(saveImageName);
-            } catch (IOException | MimeTypeException e) {
+                newImage = fileService.saveProfileImage(userUpdateVM.getImage());
+            } catch (MimeTypeException e) {
                 e.printStackTrace();
             }
         }
-        userRepository.save(user);
+        return updateProfile(id, userUpdateVM.getDisplayName(), newImage);
+    }
+
+    public User updateImage(Long id, InputStream image) throws IOException, MimeTypeException {
+        return updateProfile(id, null, fileService.saveProfileImage(image));
+    }
+
+    /**
+     * Writes the profile with a single update conditioned on the version read just before.
+     * When another update changed the row in between, or the write fails, nothing is written
+     * and the reference on {@code newImage} is released again, so an update either replaces
+     * the profile it read or leaves no trace.
+     *
+     * @param displayName {@code null} keeps the current display name
+     * @param newImage    already referenced for this update, {@code null} keeps the current image
+     */
+    private User updateProfile(long id, String displayName, String newImage) {
+        User user = new User();
+        UserProfile current;
+        boolean written = false;
+        try {
+            current = userRepository.findProfileById(id)
+                    .orElseThrow(() -> new NotFoundException("User " + id + " not found"));
+            user.setId(id);
+            user.setUsername(current.getUsername());
+            user.setDisplayName(displayName == null ? current.getDisplayName() : displayName);
+            user.setImage(newImage == null ? current.getImage() : newImage);
+            user.setVersion(current.getVersion() + 1);
+            written = userRepository.updateProfile(id, current.getVersion(), user.getDisplayName(), user.getImage()) == 1;
+            if (!written)
+                throw new ConflictException("The profile was changed by another request, reload it and try again");
+        } finally {
+            if (!written)
+                fileService.deleteProfileImage(newImage);
+        }
+
+        if (newImage != null)
+            fileService.deleteProfileImage(current.getImage());
+        return afterUpdate(user);
+    }
+
+    private User afterUpdate(User user) {
+        authenticationCache.evict(user.getId());
+        userCache.invalidate(user.getUsername());
+        userSuggestIndex.put(user);
+        eventPublisher.publishEvent(new UserUpdatedEvent(user.getId()));
         return user;
     }
 }
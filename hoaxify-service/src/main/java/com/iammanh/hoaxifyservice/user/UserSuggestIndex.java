@@ -0,0 +1,119 @@
+package com.iammanh.hoaxifyservice.user;
+
+import com.iammanh.hoaxifyservice.user.vm.UserVM;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index over usernames and display names for autocomplete.
+ * <p>
+ * Names are kept lower case and without diacritics in sorted maps keyed by
+ * {@code name + '\0' + id}, so the users whose name starts with a prefix are one range of
+ * the map and a lookup costs a seek plus the entries returned. Display names are also
+ * indexed from each of their first {@value #MAX_INDEXED_WORDS} words on, so "van" finds
+ * "Nguyễn Văn An". Username matches come before display name matches.
+ * <p>
+ * Kept up to date by {@link UserService}, users are loaded from the database on startup.
+ */
+@Component
+public class UserSuggestIndex {
+
+    private static final char SEPARATOR = '\0';
+    private static final int MAX_INDEXED_WORDS = 4;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final NavigableMap<String, Long> usernames = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Long> displayNames = new ConcurrentSkipListMap<>();
+    private final Map<Long, UserVM> users = new ConcurrentHashMap<>();
+
+    public void put(User user) {
+        UserVM current = new UserVM(user);
+        users.compute(user.getId(), (id, previous) -> {
+            if (previous != null)
+                unindex(previous);
+            index(current);
+            return current;
+        });
+    }
+
+    public void clear() {
+        users.clear();
+        usernames.clear();
+        displayNames.clear();
+    }
+
+    /**
+     * @param excludedId a user not to suggest, such as the one asking
+     */
+    public List<UserVM> suggest(String prefix, int limit, Long excludedId) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty())
+            return new ArrayList<>();
+        Map<Long, UserVM> found = new LinkedHashMap<>();
+        collect(usernames, normalized, limit, excludedId, found);
+        collect(displayNames, normalized, limit, excludedId, found);
+        return new ArrayList<>(found.values());
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    private void collect(NavigableMap<String, Long> names, String prefix, int limit, Long excludedId, Map<Long, UserVM> found) {
+        for (Long id : names.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (found.size() >= limit)
+                return;
+            UserVM user = users.get(id);
+            if (user != null && !id.equals(excludedId))
+                found.putIfAbsent(id, user);
+        }
+    }
+
+    private void index(UserVM user) {
+        usernames.put(key(user.getUsername(), user.getId()), user.getId());
+        for (String suffix : wordSuffixes(user.getDisplayName()))
+            displayNames.put(key(suffix, user.getId()), user.getId());
+    }
+
+    private void unindex(UserVM user) {
+        usernames.remove(key(user.getUsername(), user.getId()));
+        for (String suffix : wordSuffixes(user.getDisplayName()))
+            displayNames.remove(key(suffix, user.getId()));
+    }
+
+    private static List<String> wordSuffixes(String name) {
+        List<String> suffixes = new ArrayList<>();
+        if (name == null)
+            return suffixes;
+        String[] words = WHITESPACE.split(name.trim());
+        for (int i = 0; i < words.length && i < MAX_INDEXED_WORDS; i++)
+            suffixes.add(String.join(" ", Arrays.copyOfRange(words, i, words.length)));
+        return suffixes;
+    }
+
+    private static String key(String name, long id) {
+        return normalize(name) + SEPARATOR + id;
+    }
+
+    private static String normalize(String name) {
+        if (name == null)
+            return "";
+        String decomposed = Normalizer.normalize(WHITESPACE.matcher(name.trim()).replaceAll(" "), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,11 @@
+package com.iammanh.hoaxifyservice.user;
+
+import lombok.Value;
+
+/**
+ * Published by {@link UserService#update} once the new display name and image are saved.
+ */
+@Value
+public class UserUpdatedEvent {
+    private long userId;
+}
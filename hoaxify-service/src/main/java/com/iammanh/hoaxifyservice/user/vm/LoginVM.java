@@ -0,0 +1,20 @@
+package com.iammanh.hoaxifyservice.user.vm;
+
+import com.iammanh.hoaxifyservice.user.User;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class LoginVM extends UserVM {
+    private String token;
+    private String refreshToken;
+
+    public LoginVM(User user, String token, String refreshToken) {
+        super(user);
+        this.token = token;
+        this.refreshToken = refreshToken;
+    }
+}
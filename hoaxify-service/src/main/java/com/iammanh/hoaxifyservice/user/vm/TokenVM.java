@@ -0,0 +1,13 @@
+package com.iammanh.hoaxifyservice.user.vm;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenVM {
+    private String token;
+    private String refreshToken;
+}
@@ -0,0 +1,20 @@
+create sequence hibernate_sequence start with 1 increment by 1;
+
+create table user (
+    id bigint not null,
+    display_name varchar(255),
+    image varchar(255),
+    password varchar(255),
+    username varchar(255),
+    primary key (id)
+);
+
+create table hoax (
+    id bigint not null,
+    content varchar(5000),
+    timestamp timestamp,
+    user_id bigint,
+    primary key (id)
+);
+
+alter table hoax add constraint fk_hoax_user foreign key (user_id) references user (id);
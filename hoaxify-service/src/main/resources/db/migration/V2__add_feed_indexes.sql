@@ -0,0 +1,8 @@
+-- per-user feed: where user_id = ? [and id < ?] order by id desc
+create index idx_hoax_user_id_id on hoax (user_id, id desc);
+
+-- global feed: [where id < ?] order by id desc
+create index idx_hoax_id_desc on hoax (id desc);
+
+-- replaces the select done by the former @UniqueUsername validator
+create unique index uk_user_username on user (username);
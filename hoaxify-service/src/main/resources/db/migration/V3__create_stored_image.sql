@@ -0,0 +1,9 @@
+create table stored_image (
+    name varchar(255) not null,
+    ref_count bigint not null,
+    primary key (name)
+);
+
+-- images uploaded before reference counting, one reference per user pointing at them
+insert into stored_image (name, ref_count)
+select image, count(*) from user where image is not null group by image;
@@ -0,0 +1,21 @@
+create table file_attachment (
+    id bigint not null,
+    timestamp timestamp,
+    name varchar(255),
+    file_type varchar(255),
+    size bigint not null,
+    uploaded_size bigint not null,
+    user_id bigint,
+    primary key (id)
+);
+
+alter table file_attachment add constraint fk_file_attachment_user foreign key (user_id) references user (id);
+
+-- orphan sweep: where timestamp < ?
+create index idx_file_attachment_timestamp on file_attachment (timestamp);
+
+alter table hoax add column attachment_id bigint;
+alter table hoax add constraint fk_hoax_file_attachment foreign key (attachment_id) references file_attachment (id);
+
+-- an attachment belongs to one hoax at most
+create unique index uk_hoax_attachment_id on hoax (attachment_id);
@@ -0,0 +1,26 @@
+create table follow (
+    follower_id bigint not null,
+    followee_id bigint not null,
+    primary key (follower_id, followee_id)
+);
+
+alter table follow add constraint fk_follow_follower foreign key (follower_id) references user (id) on delete cascade;
+alter table follow add constraint fk_follow_followee foreign key (followee_id) references user (id) on delete cascade;
+
+-- fan-out: where followee_id = ?
+create index idx_follow_followee_id on follow (followee_id, follower_id);
+
+-- kept by follow and unfollow, decides between fan-out on write and on read
+alter table user add column follower_count bigint default 0 not null;
+
+create table timeline_entry (
+    user_id bigint not null,
+    hoax_id bigint not null,
+    primary key (user_id, hoax_id)
+);
+
+alter table timeline_entry add constraint fk_timeline_entry_user foreign key (user_id) references user (id) on delete cascade;
+alter table timeline_entry add constraint fk_timeline_entry_hoax foreign key (hoax_id) references hoax (id) on delete cascade;
+
+-- home timeline: where user_id = ? and hoax_id < ? order by hoax_id desc
+create index idx_timeline_entry_user_id_hoax_id on timeline_entry (user_id, hoax_id desc);
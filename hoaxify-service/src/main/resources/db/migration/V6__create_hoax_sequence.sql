@@ -0,0 +1,3 @@
+-- hoax ids are handed out in blocks of 50 by Hibernate's pooled optimizer, the sequence
+-- holds the last id of the newest block, so it starts one block past the current ids
+create sequence hoax_sequence start with (select coalesce(max(id), 0) + 50 from hoax) increment by 50;
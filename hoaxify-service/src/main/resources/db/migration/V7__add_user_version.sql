@@ -0,0 +1,2 @@
+-- optimistic lock of profile updates, bumped by every write of the row
+alter table user add column version bigint default 0 not null;
@@ -0,0 +1,3 @@
+-- every hoax takes the next id from the sequence, so ids grow in the order hoaxes are
+-- saved on any number of instances, the feeds and "after id" polls rely on that
+alter sequence hoax_sequence restart with (select coalesce(max(id), 0) + 1 from hoax) increment by 1;
@@ -15,9 +15,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.File;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -106,4 +109,78 @@ public class HoaxifyServiceApplicationTests {
 		String cacheControl = mvcResult.getResponse().getHeaderValue("Cache-Control").toString();
 		assertThat(cacheControl).containsIgnoringCase("max-age=31536000");
 	}
+
+	@Test
+	public void getStaticFile_whenImageExistInProfileUploadFolder_receiveImmutableWithETag() throws Exception {
+		String fileName = "profile.png";
+		File source = new ClassPathResource("profile.png").getFile();
+
+		File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + fileName);
+		FileUtils.copyFile(source, target);
+
+		mockMvc.perform(get("/images/" + appConfiguration.getProfileImagesFolder() + "/" + fileName))
+				.andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"))
+				.andExpect(header().string("ETag", "\"profile.png\""));
+	}
+
+	@Test
+	public void getStaticFile_whenETagMatches_receiveNotModified() throws Exception {
+		String fileName = "profile.png";
+		File source = new ClassPathResource("profile.png").getFile();
+
+		File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + fileName);
+		FileUtils.copyFile(source, target);
+
+		mockMvc.perform(get("/images/" + appConfiguration.getProfileImagesFolder() + "/" + fileName)
+				.header("If-None-Match", "\"profile.png\""))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	public void getStaticFile_whenImageDoesNotExist_receiveNoCacheHeader() throws Exception {
+		mockMvc.perform(get("/images/" + appConfiguration.getProfileImagesFolder() + "/there-is-no-such-image.png"))
+				.andExpect(header().doesNotExist("ETag"));
+	}
+
+	@Test
+	public void getStaticFile_whenNotModifiedSinceLastModified_receiveNotModified() throws Exception {
+		String fileName = "profile.png";
+		File source = new ClassPathResource("profile.png").getFile();
+
+		File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + fileName);
+		FileUtils.copyFile(source, target);
+
+		mockMvc.perform(get("/images/" + appConfiguration.getProfileImagesFolder() + "/" + fileName)
+				.header("If-Modified-Since", target.lastModified() + 1000))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	public void getStaticFile_whenRangeIsRequested_receivePartialContent() throws Exception {
+		String fileName = "profile.png";
+		File source = new ClassPathResource("profile.png").getFile();
+
+		File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + fileName);
+		FileUtils.copyFile(source, target);
+		byte[] bytes = FileUtils.readFileToByteArray(source);
+
+		mockMvc.perform(get("/images/" + appConfiguration.getProfileImagesFolder() + "/" + fileName)
+				.header("Range", "bytes=10-19"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string("Content-Range", "bytes 10-19/" + bytes.length))
+				.andExpect(content().bytes(Arrays.copyOfRange(bytes, 10, 20)));
+	}
+
+	@Test
+	public void getStaticFile_whenRangeStartsAfterTheImage_receiveRangeNotSatisfiable() throws Exception {
+		String fileName = "profile.png";
+		File source = new ClassPathResource("profile.png").getFile();
+
+		File target = new File(appConfiguration.getFullProfileImagesPath() + "/" + fileName);
+		FileUtils.copyFile(source, target);
+
+		mockMvc.perform(get("/images/" + appConfiguration.getProfileImagesFolder() + "/" + fileName)
+				.header("Range", "bytes=" + (target.length() + 10) + "-"))
+				.andExpect(status().isRequestedRangeNotSatisfiable());
+	}
 }
@@ -0,0 +1,66 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.file.FileService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.mime.MimeTypeException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type detection of uploaded images with {@link FileService#detectType} and
+ * {@link FileService#getExtension}, on the PNG and JPEG files the tests upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileTypeBenchmark {
+
+    @Param({"profile.png", "profile.jpg"})
+    public String file;
+
+    private FileService fileService;
+    private byte[] image;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileService = new FileService(new AppConfiguration(), null, null, new SimpleMeterRegistry());
+        try (InputStream in = new ClassPathResource(file).getInputStream()) {
+            image = IOUtils.toByteArray(in);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        fileService.shutdown();
+    }
+
+    @Benchmark
+    public String detectType() {
+        return fileService.detectType(image);
+    }
+
+    @Benchmark
+    public String getExtension() throws IOException, MimeTypeException {
+        return fileService.getExtension(image);
+    }
+}
@@ -0,0 +1,90 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.iammanh.hoaxifyservice.HoaxifyServiceApplication;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxService;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxBatchItemVM;
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hoaxes saved per second through {@link HoaxService#saveHoax} one by one and through
+ * {@link HoaxService#saveHoaxes} in batches of {@value #HOAXES}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HoaxIngestBenchmark {
+
+    private static final int HOAXES = 500;
+
+    private ConfigurableApplicationContext context;
+    private HoaxService hoaxService;
+    private User author;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(HoaxifyServiceApplication.class)
+                .profiles("test")
+                .properties("server.port=0")
+                .run();
+        hoaxService = context.getBean(HoaxService.class);
+        User user = new User();
+        user.setUsername("importer");
+        user.setDisplayName("importer");
+        user.setPassword("P4ssword");
+        author = context.getBean(UserService.class).save(user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HOAXES)
+    public long oneByOne() {
+        long last = 0;
+        for (Hoax hoax : hoaxes())
+            last = hoaxService.saveHoax(hoax, author).getId();
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HOAXES)
+    public List<HoaxBatchItemVM> batch() {
+        return hoaxService.saveHoaxes(hoaxes(), author);
+    }
+
+    private static List<Hoax> hoaxes() {
+        List<Hoax> hoaxes = new ArrayList<>(HOAXES);
+        for (int i = 0; i < HOAXES; i++) {
+            Hoax hoax = new Hoax();
+            hoax.setContent("imported hoax number " + i);
+            hoaxes.add(hoax);
+        }
+        return hoaxes;
+    }
+}
@@ -0,0 +1,137 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.iammanh.hoaxifyservice.HoaxifyServiceApplication;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxService;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link HoaxService} feed queries built from Specifications, against an H2 database
+ * seeded with {@code hoaxes} hoaxes spread over {@code users} authors. The ids the queries
+ * start from are picked at random and are older than the in-memory feed windows, so every
+ * call reaches the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HoaxQueryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final Pageable NEWEST_FIRST = PageRequest.of(0, PAGE_SIZE, Sort.by(Sort.Direction.DESC, "id"));
+
+    @Param({"100000"})
+    public int hoaxes;
+
+    @Param({"1000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private HoaxService hoaxService;
+    private List<String> usernames;
+    private long[] hoaxIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(HoaxifyServiceApplication.class)
+                .profiles("test")
+                .properties("server.port=0")
+                .run();
+        hoaxService = context.getBean(HoaxService.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        seed(jdbc, context.getBean(PasswordEncoder.class).encode("P4ssword"));
+        usernames = jdbc.queryForList("select username from user", String.class);
+        hoaxIds = jdbc.queryForList("select id from hoax order by id", Long.class).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<Hoax> globalSlice() {
+        return hoaxService.getHoaxSlice(olderHoaxId(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Slice<Hoax> userSlice() {
+        return hoaxService.getHoaxSlice(olderHoaxId(), randomUsername(), PAGE_SIZE);
+    }
+
+    /**
+     * The offset pagination predecessor of the slices, it also counts the older hoaxes.
+     */
+    @Benchmark
+    public Page<Hoax> globalOldHoaxes() {
+        return hoaxService.getOldHoaxes(olderHoaxId(), null, NEWEST_FIRST);
+    }
+
+    @Benchmark
+    public Page<Hoax> userOldHoaxes() {
+        return hoaxService.getOldHoaxes(olderHoaxId(), randomUsername(), NEWEST_FIRST);
+    }
+
+    /**
+     * Hoaxes of one author newer than a random one of the oldest hoaxes, returns about
+     * {@code hoaxes / users} rows.
+     */
+    @Benchmark
+    public List<HoaxVM> userNewHoaxes() {
+        long id = hoaxIds[ThreadLocalRandom.current().nextInt(hoaxIds.length / 10)];
+        return hoaxService.getNewHoaxes(id, randomUsername(), NEWEST_FIRST);
+    }
+
+    private long olderHoaxId() {
+        return hoaxIds[ThreadLocalRandom.current().nextInt(hoaxIds.length / 2)];
+    }
+
+    private String randomUsername() {
+        return usernames.get(ThreadLocalRandom.current().nextInt(usernames.size()));
+    }
+
+    private void seed(JdbcTemplate jdbc, String password) {
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++)
+            userRows.add(new Object[]{"bench" + i, "bench" + i, password});
+        jdbc.batchUpdate("insert into user (id, username, display_name, password) values (next value for hibernate_sequence, ?, ?, ?)", userRows);
+        List<Long> userIds = jdbc.queryForList("select id from user", Long.class);
+
+        Random random = new Random(42);
+        List<Object[]> hoaxRows = new ArrayList<>(hoaxes);
+        for (int i = 0; i < hoaxes; i++)
+            hoaxRows.add(new Object[]{"seeded hoax content " + i, new Date(), userIds.get(random.nextInt(userIds.size()))});
+        jdbc.batchUpdate("insert into hoax (id, content, timestamp, user_id) values (next value for hoax_sequence, ?, ?, ?)", hoaxRows);
+    }
+}
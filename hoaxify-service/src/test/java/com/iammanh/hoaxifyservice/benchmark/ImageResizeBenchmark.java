@@ -0,0 +1,80 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.iammanh.hoaxifyservice.file.ImageResizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an uploaded image into one profile image variant: decode, scale, encode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageResizeBenchmark {
+
+    @Param({"800", "2400"})
+    public int sourceSize;
+
+    @Param({"32", "200"})
+    public int variantSize;
+
+    @Param({"png", "jpeg"})
+    public String format;
+
+    private final ImageResizer imageResizer = new ImageResizer();
+    private byte[] encodedSource;
+    private BufferedImage decodedSource;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(sourceSize, sourceSize * 3 / 4, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, sourceSize, sourceSize, Color.BLUE));
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        encodedSource = out.toByteArray();
+        decodedSource = ImageIO.read(new ByteArrayInputStream(encodedSource));
+    }
+
+    @Benchmark
+    public byte[] decodeResizeEncode() throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(encodedSource));
+        return encode(imageResizer.resize(source, variantSize));
+    }
+
+    @Benchmark
+    public BufferedImage resizeOnly() {
+        return imageResizer.resize(decodedSource, variantSize);
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        imageResizer.write(image, format, out);
+        return out.toByteArray();
+    }
+}
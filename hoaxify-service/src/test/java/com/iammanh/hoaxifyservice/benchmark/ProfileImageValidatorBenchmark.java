@@ -0,0 +1,67 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.file.FileService;
+import com.iammanh.hoaxifyservice.shared.ProfileImageValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating base64 profile images as they arrive in user updates. The test PNG is padded
+ * to {@code imageSize} bytes, only its header should be decoded whatever the size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileImageValidatorBenchmark {
+
+    @Param({"10240", "1048576", "8388608"})
+    public int imageSize;
+
+    private FileService fileService;
+    private ProfileImageValidator validator;
+    private String base64Image;
+
+    @Setup
+    public void setUp() throws IOException {
+        fileService = new FileService(new AppConfiguration(), null, null, new SimpleMeterRegistry());
+        validator = new ProfileImageValidator(fileService);
+        byte[] png;
+        try (InputStream in = new ClassPathResource("profile.png").getInputStream()) {
+            png = IOUtils.toByteArray(in);
+        }
+        base64Image = Base64.getEncoder().encodeToString(Arrays.copyOf(png, Math.max(png.length, imageSize)));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        fileService.shutdown();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return validator.isValid(base64Image, null);
+    }
+}
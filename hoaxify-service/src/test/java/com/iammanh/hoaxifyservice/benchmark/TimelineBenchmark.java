@@ -0,0 +1,169 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.iammanh.hoaxifyservice.HoaxifyServiceApplication;
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxService;
+import com.iammanh.hoaxifyservice.timeline.TimelineService;
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posting and reading home timelines with a skewed follower distribution.
+ * <p>
+ * Every user follows {@code follows} others picked with a Zipf distribution over the users,
+ * so a few authors are followed by most users and most authors by a handful. With the
+ * default {@code fanOutLimit} the most followed authors are merged in on read, with the
+ * unbounded one every hoax is pushed to all followers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimelineBenchmark {
+
+    private static final int HOAXES_PER_USER = 5;
+
+    @Param({"5000"})
+    public int users;
+
+    @Param({"50"})
+    public int follows;
+
+    @Param({"1.1"})
+    public double skew;
+
+    @Param({"500", "1000000"})
+    public long fanOutLimit;
+
+    private ConfigurableApplicationContext context;
+    private HoaxService hoaxService;
+    private TimelineService timelineService;
+    private List<User> accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(HoaxifyServiceApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "hoaxify.timeline-fan-out-limit=" + fanOutLimit)
+                .run();
+        hoaxService = context.getBean(HoaxService.class);
+        timelineService = context.getBean(TimelineService.class);
+        seed(context.getBean(JdbcTemplate.class), context.getBean(PasswordEncoder.class).encode("P4ssword"));
+        accounts = context.getBean(UserRepository.class).findAll();
+        accounts.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * A hoax by a random author, most of them have few followers.
+     */
+    @Benchmark
+    public Hoax postHoax() {
+        return post(accounts.get(ThreadLocalRandom.current().nextInt(accounts.size())));
+    }
+
+    /**
+     * A hoax by the most followed author, the worst case of fan-out on write.
+     */
+    @Benchmark
+    public Hoax postHoaxByMostFollowed() {
+        return post(accounts.get(0));
+    }
+
+    @Benchmark
+    public Slice<Hoax> readTimeline() {
+        User reader = accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()));
+        return timelineService.getTimeline(reader, null, 20);
+    }
+
+    private Hoax post(User author) {
+        Hoax hoax = new Hoax();
+        hoax.setContent("benchmark hoax content");
+        return hoaxService.saveHoax(hoax, author);
+    }
+
+    /**
+     * Users are inserted in rank order, the first one is the most followed.
+     */
+    private void seed(JdbcTemplate jdbc, String password) {
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++)
+            userRows.add(new Object[]{"bench" + i, "bench" + i, password});
+        jdbc.batchUpdate("insert into user (id, username, display_name, password) values (next value for hibernate_sequence, ?, ?, ?)", userRows);
+        long[] ids = jdbc.queryForList("select id from user order by id", Long.class).stream().mapToLong(Long::longValue).toArray();
+
+        Random random = new Random(42);
+        double[] cumulative = zipf(users, skew);
+        List<Object[]> followRows = new ArrayList<>(users * follows);
+        for (int follower = 0; follower < users; follower++) {
+            Set<Integer> followees = new HashSet<>();
+            while (followees.size() < Math.min(follows, users - 1)) {
+                int index = Arrays.binarySearch(cumulative, random.nextDouble());
+                int rank = index >= 0 ? index : -index - 1;
+                if (rank != follower && rank < users)
+                    followees.add(rank);
+            }
+            for (int followee : followees)
+                followRows.add(new Object[]{ids[follower], ids[followee]});
+        }
+        jdbc.batchUpdate("insert into follow (follower_id, followee_id) values (?, ?)", followRows);
+        jdbc.update("update user u set follower_count = (select count(*) from follow f where f.followee_id = u.id)");
+
+        List<Object[]> hoaxRows = new ArrayList<>(users * HOAXES_PER_USER);
+        for (int i = 0; i < HOAXES_PER_USER; i++)
+            for (long id : ids)
+                hoaxRows.add(new Object[]{"seeded hoax content", new Date(), id});
+        jdbc.batchUpdate("insert into hoax (id, content, timestamp, user_id) values (next value for hoax_sequence, ?, ?, ?)", hoaxRows);
+        jdbc.update("insert into timeline_entry (user_id, hoax_id) select user_id, id from hoax");
+        jdbc.update("insert into timeline_entry (user_id, hoax_id) "
+                + "select f.follower_id, h.id from follow f join hoax h on h.user_id = f.followee_id join user u on u.id = f.followee_id "
+                + "where u.follower_count <= ?", context.getBean(AppConfiguration.class).getTimelineFanOutLimit());
+    }
+
+    private static double[] zipf(int n, double s) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, s);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++)
+            cumulative[rank] /= sum;
+        return cumulative;
+    }
+}
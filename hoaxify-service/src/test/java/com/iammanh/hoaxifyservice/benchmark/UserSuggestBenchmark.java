@@ -0,0 +1,70 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserSuggestIndex;
+import com.iammanh.hoaxifyservice.user.vm.UserVM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocomplete lookups against {@link UserSuggestIndex}, sampled so the report shows the
+ * p99 besides the mean. Prefixes of one to four characters of existing names, short ones
+ * match the most users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class UserSuggestBenchmark {
+
+    private static final String[] FIRST_NAMES = {"An", "Bình", "Cường", "Dũng", "Hà", "Lan", "Minh", "Ngọc", "Phương", "Tuấn",
+            "Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry", "Ivy", "Jack"};
+    private static final String[] LAST_NAMES = {"Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Smith", "Jones", "Brown", "Taylor", "Wilson"};
+
+    @Param({"1000000"})
+    public int users;
+
+    private final UserSuggestIndex index = new UserSuggestIndex();
+    private String[] prefixes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setId(i + 1);
+            user.setUsername(Long.toString(random.nextLong() & Long.MAX_VALUE, 36));
+            user.setDisplayName(LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " "
+                    + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+            index.put(user);
+        }
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            String name = random.nextBoolean()
+                    ? Long.toString(random.nextLong() & Long.MAX_VALUE, 36)
+                    : FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            prefixes[i] = name.substring(0, 1 + random.nextInt(Math.min(4, name.length())));
+        }
+    }
+
+    @Benchmark
+    public List<UserVM> suggest() {
+        return index.suggest(prefixes[ThreadLocalRandom.current().nextInt(prefixes.length)], 10, null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.iammanh.hoaxifyservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.vm.UserVM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning one feed page of entities into the response body: mapping to {@link HoaxVM} and
+ * {@link UserVM}, then writing the {@link Page} with an object mapper configured like
+ * Spring Boot's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ViewModelBenchmark {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<Hoax> hoaxes;
+    private Page<HoaxVM> page;
+
+    @Setup
+    public void setUp() {
+        hoaxes = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            User user = new User();
+            user.setId(i % 5 + 1);
+            user.setUsername("user" + i % 5);
+            user.setDisplayName("Display Name " + i % 5);
+            user.setImage("3f2a9c0e7b1d4e5f8a6b2c9d0e1f3a4b5c6d7e8f9a0b1c2d3e4f5a6b7c8d9e0f.png");
+            Hoax hoax = new Hoax();
+            hoax.setId(1000 - i);
+            hoax.setContent("a hoax of ordinary length that someone typed on their phone, number " + i);
+            hoax.setTimestamp(new Date());
+            hoax.setUser(user);
+            hoaxes.add(hoax);
+        }
+        page = mapPage();
+    }
+
+    @Benchmark
+    public UserVM mapUser() {
+        return new UserVM(hoaxes.get(0).getUser());
+    }
+
+    @Benchmark
+    public HoaxVM mapHoax() {
+        return new HoaxVM(hoaxes.get(0));
+    }
+
+    @Benchmark
+    public Page<HoaxVM> mapPage() {
+        return new PageImpl<>(hoaxes, PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "id")), 10_000)
+                .map(HoaxVM::new);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(mapPage());
+    }
+}
@@ -0,0 +1,98 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import com.iammanh.hoaxifyservice.user.UserCache;
+import com.iammanh.hoaxifyservice.user.UserRepository;
+import com.iammanh.hoaxifyservice.user.UserService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalManagementPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class MetricsTest {
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @LocalManagementPort
+    int managementPort;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    @After
+    public void tearDown() {
+        userRepository.deleteAll();
+        userCache.invalidateAll();
+        authenticationCache.evict("user1");
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+    }
+
+    @Test
+    public void getPrometheus_onApplicationPort_receiveNotFound() {
+        ResponseEntity<String> response = testRestTemplate.getForEntity("/actuator/prometheus", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void getPrometheus_afterApiRequest_receiveLatencyHistogramOfEndpoint() {
+        testRestTemplate.getForEntity("/api/v1/users", String.class);
+
+        assertThat(scrape()).contains("http_server_requests_seconds_bucket{").contains("uri=\"/api/v1/users\"");
+    }
+
+    @Test
+    public void getPrometheus_afterApiRequest_receiveStatementsPerSession() {
+        testRestTemplate.getForEntity("/api/v1/users", String.class);
+
+        assertThat(scrape()).contains("hoaxify_jpa_session_statements_count").contains("hoaxify_jpa_session_time_seconds_bucket{");
+    }
+
+    @Test
+    public void getPrometheus_afterApiRequest_receiveStatementsPerRequestOfEndpoint() {
+        testRestTemplate.getForEntity("/api/v1/users", String.class);
+
+        assertThat(scrape())
+                .containsPattern("hoaxify_request_sql_statements_bucket\\{.*uri=\"/api/v1/users\"")
+                .containsPattern("hoaxify_request_sql_time_seconds_count\\{.*uri=\"/api/v1/users\"");
+    }
+
+    @Test
+    public void getPrometheus_afterBasicLogin_receiveLookupAndPasswordTimings() {
+        userService.save(createValidUser("user1"));
+        testRestTemplate.getRestTemplate().getInterceptors().add(new BasicAuthenticationInterceptor("user1", "P4ssword"));
+        testRestTemplate.postForEntity("/api/v1/login", null, String.class);
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        assertThat(scrape())
+                .contains("hoaxify_authentication_seconds_count{")
+                .contains("step=\"lookup\"")
+                .contains("step=\"password\"");
+    }
+
+    private String scrape() {
+        return testRestTemplate.getForObject("http://localhost:" + managementPort + "/actuator/prometheus", String.class);
+    }
+}
@@ -0,0 +1,56 @@
+package com.iammanh.hoaxifyservice.configuration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReadReplicaRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReadReplicaRoutingDataSource(database("primary"), database("replica")));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    public void query_whenTransactionIsReadOnly_readsReplica() {
+        transactionTemplate.setReadOnly(true);
+        assertThat(transactionTemplate.execute(status -> databaseName())).isEqualTo("replica");
+    }
+
+    @Test
+    public void query_whenTransactionIsReadWrite_readsPrimary() {
+        assertThat(transactionTemplate.execute(status -> databaseName())).isEqualTo("primary");
+    }
+
+    @Test
+    public void query_whenNotInTransaction_readsPrimary() {
+        assertThat(databaseName()).isEqualTo("primary");
+    }
+
+    private String databaseName() {
+        return jdbcTemplate.queryForObject("select name from marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists marker (name varchar(16))");
+        jdbc.update("delete from marker");
+        jdbc.update("insert into marker (name) values (?)", name);
+        return dataSource;
+    }
+}
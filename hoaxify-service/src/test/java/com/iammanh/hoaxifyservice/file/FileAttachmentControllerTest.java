@@ -0,0 +1,325 @@
+package com.iammanh.hoaxifyservice.file;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.file.vm.UploadRequestVM;
+import com.iammanh.hoaxifyservice.file.vm.UploadVM;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxFeedCache;
+import com.iammanh.hoaxifyservice.hoax.HoaxRepository;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserCache;
+import com.iammanh.hoaxifyservice.user.UserRepository;
+import com.iammanh.hoaxifyservice.user.UserService;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidHoax;
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class FileAttachmentControllerTest {
+
+    private static final String API_V1_ATTACHMENTS = "/api/v1/attachments";
+    private static final long CHUNK_SIZE = 100;
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private HoaxRepository hoaxRepository;
+
+    @Autowired
+    private HoaxFeedCache hoaxFeedCache;
+
+    @Autowired
+    private FileAttachmentRepository fileAttachmentRepository;
+
+    @Autowired
+    private FileAttachmentService fileAttachmentService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private AppConfiguration appConfiguration;
+
+    private long defaultChunkSize;
+    private long defaultOrphanTtl;
+
+    @Before
+    public void setUp() {
+        defaultChunkSize = appConfiguration.getAttachmentChunkSize();
+        defaultOrphanTtl = appConfiguration.getAttachmentOrphanTtl();
+        appConfiguration.setAttachmentChunkSize(CHUNK_SIZE);
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        appConfiguration.setAttachmentChunkSize(defaultChunkSize);
+        appConfiguration.setAttachmentOrphanTtl(defaultOrphanTtl);
+        hoaxRepository.deleteAll();
+        hoaxFeedCache.invalidateAll();
+        fileAttachmentRepository.deleteAll();
+        userRepository.deleteAll();
+        userCache.invalidateAll();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        FileUtils.cleanDirectory(new File(appConfiguration.getFullAttachmentsPath()));
+    }
+
+    private void authenticate(String username) {
+        testRestTemplate.getRestTemplate().getInterceptors()
+                .add(new BasicAuthenticationInterceptor(username, "P4ssword"));
+    }
+
+    @Test
+    public void postAttachment_whenUserIsAuthorized_receiveUploadAtOffsetZero() {
+        ResponseEntity<UploadVM> response = startUpload(250);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getBody().getOffset()).isEqualTo(0);
+        assertThat(response.getBody().getChunkSize()).isEqualTo(CHUNK_SIZE);
+    }
+
+    @Test
+    public void postAttachment_whenUserIsUnauthorized_receiveUnauthorized() {
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        ResponseEntity<Object> response = testRestTemplate.postForEntity(API_V1_ATTACHMENTS, uploadRequest(250), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void putChunk_whenAllChunksAreSent_attachmentIsStored() throws IOException {
+        byte[] image = imageBytes();
+
+        UploadVM upload = uploadAll(image);
+
+        assertThat(upload.isComplete()).isTrue();
+        assertThat(upload.getFileType()).isEqualTo("image/png");
+        File stored = new File(appConfiguration.getFullAttachmentsPath(), upload.getName());
+        assertThat(FileUtils.readFileToByteArray(stored)).isEqualTo(image);
+    }
+
+    @Test
+    public void putChunk_whenOffsetIsNotTheUploadedSize_receiveConflict() throws IOException {
+        byte[] image = imageBytes();
+        long id = startUpload(image.length).getBody().getId();
+
+        ResponseEntity<Object> response = putChunk(id, CHUNK_SIZE, Arrays.copyOfRange(image, 100, 200), Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    public void getUpload_whenChunkWasRejected_offsetStaysAtLastCompleteChunk() throws IOException {
+        byte[] image = imageBytes();
+        long id = startUpload(image.length).getBody().getId();
+        putChunk(id, 0, Arrays.copyOfRange(image, 0, 100), UploadVM.class);
+
+        putChunk(id, 100, Arrays.copyOfRange(image, 100, 150), Object.class);
+        ResponseEntity<UploadVM> response = testRestTemplate.getForEntity(API_V1_ATTACHMENTS + "/" + id, UploadVM.class);
+
+        assertThat(response.getBody().getOffset()).isEqualTo(100);
+    }
+
+    @Test
+    public void writeChunk_whenStoringTheCompleteFileFails_resentLastChunkStoresTheWholeFile() throws IOException {
+        AtomicBoolean failPut = new AtomicBoolean(true);
+        FileAttachmentService service = new FileAttachmentService(fileAttachmentRepository,
+                new LocalFileStorage(Paths.get(appConfiguration.getUploadPath())) {
+                    @Override
+                    public void put(String key, Path source) throws IOException {
+                        if (failPut.getAndSet(false))
+                            throw new IOException("storage unavailable");
+                        super.put(key, source);
+                    }
+                }, fileService, appConfiguration);
+        User user = userRepository.findByUsername("user1").get();
+        byte[] image = imageBytes();
+        long id = service.startUpload(image.length, user).getId();
+        int last = (int) ((image.length - 1) / CHUNK_SIZE * CHUNK_SIZE);
+        for (int offset = 0; offset < last; offset += CHUNK_SIZE)
+            service.writeChunk(id, offset, CHUNK_SIZE, new ByteArrayInputStream(image, offset, (int) CHUNK_SIZE), user);
+
+        assertThatThrownBy(() -> service.writeChunk(id, last, image.length - last,
+                new ByteArrayInputStream(image, last, image.length - last), user))
+                .isInstanceOf(IOException.class);
+        FileAttachment stored = service.writeChunk(id, last, image.length - last,
+                new ByteArrayInputStream(image, last, image.length - last), user);
+
+        assertThat(FileUtils.readFileToByteArray(new File(appConfiguration.getFullAttachmentsPath(), stored.getName())))
+                .isEqualTo(image);
+    }
+
+    @Test
+    public void putChunk_whenPartOfTheUploadIsGone_receiveConflict() throws IOException {
+        byte[] image = imageBytes();
+        long id = startUpload(image.length).getBody().getId();
+        putChunk(id, 0, Arrays.copyOfRange(image, 0, 100), UploadVM.class);
+        Files.delete(Paths.get(appConfiguration.getFullTempPath(), "attachment-" + id + ".part"));
+
+        ResponseEntity<Object> response = putChunk(id, 100, Arrays.copyOfRange(image, 100, 200), Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    public void putChunk_whenFirstChunkIsNotAnImage_receiveBadRequest() throws IOException {
+        byte[] text = FileUtils.readFileToByteArray(new ClassPathResource("profile.txt").getFile());
+        long id = startUpload(text.length).getBody().getId();
+
+        ResponseEntity<Object> response = putChunk(id, 0, Arrays.copyOf(text, (int) Math.min(CHUNK_SIZE, text.length)), Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void getUpload_whenUploadBelongsToAnotherUser_receiveNotFound() {
+        long id = startUpload(250).getBody().getId();
+        userService.save(createValidUser("user2"));
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authenticate("user2");
+
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_V1_ATTACHMENTS + "/" + id, Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void postHoax_withCompleteAttachment_hoaxHasAttachment() throws IOException {
+        UploadVM upload = uploadAll(imageBytes());
+        Hoax hoax = createValidHoax();
+        FileAttachment attachment = new FileAttachment();
+        attachment.setId(upload.getId());
+        hoax.setAttachment(attachment);
+
+        ResponseEntity<HoaxVM> response = testRestTemplate.postForEntity("/api/v1/hoaxes", hoax, HoaxVM.class);
+
+        assertThat(response.getBody().getAttachment().getName()).isEqualTo(upload.getName());
+    }
+
+    @Test
+    public void postHoax_withIncompleteAttachment_receiveBadRequest() {
+        long id = startUpload(250).getBody().getId();
+        Hoax hoax = createValidHoax();
+        FileAttachment attachment = new FileAttachment();
+        attachment.setId(id);
+        hoax.setAttachment(attachment);
+
+        ResponseEntity<Object> response = testRestTemplate.postForEntity("/api/v1/hoaxes", hoax, Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void removeOrphans_whenAttachmentIsNotLinkedToAHoax_removesAttachmentAndFile() throws IOException {
+        UploadVM upload = uploadAll(imageBytes());
+        appConfiguration.setAttachmentOrphanTtl(-1000);
+
+        fileAttachmentService.removeOrphans();
+
+        assertThat(fileAttachmentRepository.count()).isEqualTo(0);
+        assertThat(new File(appConfiguration.getFullAttachmentsPath(), upload.getName()).exists()).isFalse();
+    }
+
+    @Test
+    public void removeOrphans_whenAttachmentIsLinkedToAHoax_keepsAttachment() throws IOException {
+        UploadVM upload = uploadAll(imageBytes());
+        Hoax hoax = createValidHoax();
+        FileAttachment attachment = new FileAttachment();
+        attachment.setId(upload.getId());
+        hoax.setAttachment(attachment);
+        testRestTemplate.postForEntity("/api/v1/hoaxes", hoax, Object.class);
+        appConfiguration.setAttachmentOrphanTtl(-1000);
+
+        fileAttachmentService.removeOrphans();
+
+        assertThat(fileAttachmentRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void deleteOrphan_whenAttachmentWasLinkedAfterItWasListed_deletesNothing() throws IOException {
+        UploadVM upload = uploadAll(imageBytes());
+        Date cutoff = new Date(System.currentTimeMillis() + 1000);
+        assertThat(fileAttachmentRepository.findOrphansNotTouchedSince(cutoff)).hasSize(1);
+        Hoax hoax = createValidHoax();
+        FileAttachment attachment = new FileAttachment();
+        attachment.setId(upload.getId());
+        hoax.setAttachment(attachment);
+        testRestTemplate.postForEntity("/api/v1/hoaxes", hoax, Object.class);
+
+        assertThat(fileAttachmentRepository.deleteOrphan(upload.getId(), cutoff)).isEqualTo(0);
+        assertThat(fileAttachmentRepository.count()).isEqualTo(1);
+    }
+
+    private byte[] imageBytes() throws IOException {
+        return FileUtils.readFileToByteArray(new ClassPathResource("profile.png").getFile());
+    }
+
+    private UploadVM uploadAll(byte[] file) {
+        UploadVM upload = startUpload(file.length).getBody();
+        for (int offset = 0; offset < file.length; offset += CHUNK_SIZE) {
+            byte[] chunk = Arrays.copyOfRange(file, offset, (int) Math.min(file.length, offset + CHUNK_SIZE));
+            upload = putChunk(upload.getId(), offset, chunk, UploadVM.class).getBody();
+        }
+        return upload;
+    }
+
+    private ResponseEntity<UploadVM> startUpload(long size) {
+        return testRestTemplate.postForEntity(API_V1_ATTACHMENTS, uploadRequest(size), UploadVM.class);
+    }
+
+    private UploadRequestVM uploadRequest(long size) {
+        UploadRequestVM uploadRequest = new UploadRequestVM();
+        uploadRequest.setSize(size);
+        return uploadRequest;
+    }
+
+    private <T> ResponseEntity<T> putChunk(long id, long offset, byte[] chunk, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.set("Upload-Offset", String.valueOf(offset));
+        return testRestTemplate.exchange(API_V1_ATTACHMENTS + "/" + id, HttpMethod.PUT, new HttpEntity<>(chunk, headers), responseType);
+    }
+}
@@ -1,6 +1,8 @@
 package com.iammanh.hoaxifyservice.file;
 
 import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.error.BadRequestException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.io.FileUtils;
 import org.apache.tika.mime.MimeTypeException;
 import org.junit.After;
@@ -8,13 +10,39 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 
 @RunWith(SpringRunner.class)
@@ -25,29 +53,38 @@ public class FileServiceTest {
 
     AppConfiguration appConfiguration;
 
+    Map<String, StoredImage> storedImages = new ConcurrentHashMap<>();
+
     File profileImagesPath;
     File attachmentsPath;
+    File tempPath;
 
     @Before
     public void setUp() {
         appConfiguration = new AppConfiguration();
         appConfiguration.setUploadPath("uploads-test");
 
-        fileService = new FileService(appConfiguration);
+        fileService = new FileService(appConfiguration, inMemoryStoredImageRepository(),
+                new LocalFileStorage(Paths.get(appConfiguration.getUploadPath())), new SimpleMeterRegistry());
 
         profileImagesPath = new File(appConfiguration.getFullProfileImagesPath());
         attachmentsPath = new File(appConfiguration.getFullAttachmentsPath());
+        tempPath = new File(appConfiguration.getFullTempPath());
 
         profileImagesPath.mkdir();
         attachmentsPath.mkdir();
+        tempPath.mkdir();
     }
 
     @After
     public void cleanUp() throws Exception {
+        fileService.shutdown();
         if (profileImagesPath.exists())
             FileUtils.cleanDirectory(profileImagesPath);
         if(attachmentsPath.exists())
             FileUtils.cleanDirectory(attachmentsPath);
+        if (tempPath.exists())
+            FileUtils.cleanDirectory(tempPath);
     }
 
     @Test
@@ -82,4 +119,239 @@ public class FileServiceTest {
         assertThat(extension).isEqualToIgnoringCase(".jpg");
     }
 
+    @Test
+    public void saveProfileImage_whenPngFileProvided_writesImageInBackground() throws Exception {
+        ClassPathResource resource = new ClassPathResource("profile.png");
+        byte[] fileArray = FileUtils.readFileToByteArray(resource.getFile());
+        String imageName = fileService.saveProfileImage(Base64.getEncoder().encodeToString(fileArray));
+        fileService.shutdown();
+
+        File stored = new File(profileImagesPath, imageName);
+        assertThat(FileUtils.readFileToByteArray(stored)).isEqualTo(fileArray);
+    }
+
+    @Test
+    public void saveProfileImage_whenPngStreamProvided_storesImageWithPngExtension() throws Exception {
+        ClassPathResource resource = new ClassPathResource("profile.png");
+        String imageName;
+        try (InputStream image = resource.getInputStream()) {
+            imageName = fileService.saveProfileImage(image);
+        }
+        fileService.shutdown();
+
+        assertThat(imageName).endsWith(".png");
+        File stored = new File(profileImagesPath, imageName);
+        assertThat(FileUtils.contentEquals(stored, resource.getFile())).isTrue();
+    }
+
+    @Test
+    public void saveProfileImage_whenImageIsLargerThanVariants_storesScaledVariants() throws Exception {
+        ClassPathResource resource = new ClassPathResource("profile.png");
+        String imageName;
+        try (InputStream image = resource.getInputStream()) {
+            imageName = fileService.saveProfileImage(image);
+        }
+        fileService.shutdown();
+
+        for (int size : appConfiguration.getProfileImageVariants()) {
+            BufferedImage variant = ImageIO.read(new File(profileImagesPath, FileService.variantName(imageName, size)));
+            assertThat(Math.max(variant.getWidth(), variant.getHeight())).isEqualTo(size);
+        }
+    }
+
+    @Test
+    public void deleteProfileImage_whenImageHasVariants_removesVariants() throws Exception {
+        ClassPathResource resource = new ClassPathResource("profile.png");
+        String imageName;
+        try (InputStream image = resource.getInputStream()) {
+            imageName = fileService.saveProfileImage(image);
+        }
+        fileService.deleteProfileImage(imageName);
+        fileService.shutdown();
+
+        assertThat(profileImagesPath.list()).isEmpty();
+    }
+
+    @Test
+    public void variantName_whenImageHasExtension_insertsSizeBeforeExtension() {
+        assertThat(FileService.variantName("abc.png", 32)).isEqualTo("abc-32.png");
+    }
+
+    @Test
+    public void saveProfileImage_whenTextStreamProvided_throwsBadRequestAndLeavesNoFile() throws Exception {
+        ClassPathResource resource = new ClassPathResource("profile.txt");
+        try (InputStream text = resource.getInputStream()) {
+            assertThatThrownBy(() -> fileService.saveProfileImage(text))
+                    .isInstanceOf(BadRequestException.class);
+        }
+        assertThat(profileImagesPath.list()).isEmpty();
+        assertThat(tempPath.list()).isEmpty();
+    }
+
+    @Test
+    public void saveProfileImage_whenSameImageIsSavedTwice_returnsSameNameAndCountsReferences() throws Exception {
+        ClassPathResource resource = new ClassPathResource("profile.png");
+        String base64 = Base64.getEncoder().encodeToString(FileUtils.readFileToByteArray(resource.getFile()));
+        String first = fileService.saveProfileImage(base64);
+        String second;
+        try (InputStream image = resource.getInputStream()) {
+            second = fileService.saveProfileImage(image);
+        }
+
+        assertThat(second).isEqualTo(first);
+        assertThat(storedImages.get(first).getRefCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void deleteProfileImage_whenImageIsStillReferenced_keepsImage() throws Exception {
+        ClassPathResource resource = new ClassPathResource("profile.png");
+        String base64 = Base64.getEncoder().encodeToString(FileUtils.readFileToByteArray(resource.getFile()));
+        String imageName = fileService.saveProfileImage(base64);
+        fileService.saveProfileImage(base64);
+        fileService.deleteProfileImage(imageName);
+        fileService.shutdown();
+
+        assertThat(new File(profileImagesPath, imageName).exists()).isTrue();
+    }
+
+    @Test
+    public void saveProfileImage_whenTwoInstancesShareAnImageConcurrently_countsEveryReference() throws Exception {
+        FileService otherInstance = new FileService(appConfiguration, inMemoryStoredImageRepository(),
+                new LocalFileStorage(Paths.get(appConfiguration.getUploadPath())), new SimpleMeterRegistry());
+        ClassPathResource resource = new ClassPathResource("profile.png");
+        String base64 = Base64.getEncoder().encodeToString(FileUtils.readFileToByteArray(resource.getFile()));
+        String imageName = fileService.saveProfileImage(base64);
+        File stored = new File(profileImagesPath, imageName);
+        for (int i = 0; i < 100 && !stored.exists(); i++)
+            Thread.sleep(50);
+
+        int threads = 8;
+        int referencesPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> acquisitions = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            FileService instance = t % 2 == 0 ? fileService : otherInstance;
+            acquisitions.add(executor.submit(() -> {
+                for (int i = 0; i < referencesPerThread; i++)
+                    instance.saveProfileImage(base64);
+                return null;
+            }));
+        }
+        for (Future<?> acquisition : acquisitions)
+            acquisition.get(1, TimeUnit.MINUTES);
+        assertThat(storedImages.get(imageName).getRefCount()).isEqualTo(1 + threads * referencesPerThread);
+
+        List<Future<?>> releases = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            FileService instance = t % 2 == 0 ? fileService : otherInstance;
+            releases.add(executor.submit(() -> {
+                for (int i = 0; i < referencesPerThread; i++)
+                    instance.deleteProfileImage(imageName);
+            }));
+        }
+        for (Future<?> release : releases)
+            release.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+        otherInstance.shutdown();
+
+        assertThat(storedImages.get(imageName).getRefCount()).isEqualTo(1);
+        assertThat(stored.exists()).isTrue();
+    }
+
+    @Test
+    public void saveProfileImage_whenStreamDeclaresTooManyPixels_throwsBadRequestAndLeavesNoFile() throws Exception {
+        try (InputStream image = new ByteArrayInputStream(pngDeclaring(100_000, 100_000))) {
+            assertThatThrownBy(() -> fileService.saveProfileImage(image))
+                    .isInstanceOf(BadRequestException.class);
+        }
+        assertThat(profileImagesPath.list()).isEmpty();
+        assertThat(tempPath.list()).isEmpty();
+        assertThat(storedImages).isEmpty();
+    }
+
+    @Test
+    public void saveProfileImage_whenBase64DeclaresTooManyPixels_throwsBadRequest() {
+        String base64 = Base64.getEncoder().encodeToString(pngDeclaring(100_000, 100_000));
+        assertThatThrownBy(() -> fileService.saveProfileImage(base64))
+                .isInstanceOf(BadRequestException.class);
+        assertThat(storedImages).isEmpty();
+    }
+
+    @Test
+    public void saveProfileImage_whenImageIsNotBase64_throwsBadRequest() {
+        assertThatThrownBy(() -> fileService.saveProfileImage("not base64!"))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    /**
+     * A valid, tiny PNG whose header claims {@code width} x {@code height} one bit pixels.
+     */
+    private static byte[] pngDeclaring(int width, int height) {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        png.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'}, 0, 8);
+        ByteBuffer header = ByteBuffer.allocate(13).putInt(width).putInt(height).put((byte) 1).put((byte) 0);
+        writeChunk(png, "IHDR", header.array());
+        writeChunk(png, "IDAT", deflate(new byte[2]));
+        writeChunk(png, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream png, String type, byte[] data) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        png.write(ByteBuffer.allocate(4).putInt(data.length).array(), 0, 4);
+        png.write(typeBytes, 0, 4);
+        png.write(data, 0, data.length);
+        png.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array(), 0, 4);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[64];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Applies each reference change atomically, the way the single statements of the real
+     * repository do.
+     */
+    private StoredImageRepository inMemoryStoredImageRepository() {
+        StoredImageRepository repository = mock(StoredImageRepository.class);
+        when(repository.existsById(anyString())).thenAnswer(invocation -> storedImages.containsKey(invocation.<String>getArgument(0)));
+        when(repository.addReference(anyString())).thenAnswer(invocation -> storedImages.computeIfPresent(invocation.getArgument(0),
+                (name, image) -> new StoredImage(name, image.getRefCount() + 1)) == null ? 0 : 1);
+        when(repository.insertFirstReference(anyString())).thenAnswer(invocation -> {
+            String name = invocation.getArgument(0);
+            if (storedImages.putIfAbsent(name, new StoredImage(name, 1)) != null)
+                throw new DataIntegrityViolationException("duplicate key " + name);
+            return 1;
+        });
+        when(repository.releaseSharedReference(anyString())).thenAnswer(invocation -> {
+            AtomicBoolean released = new AtomicBoolean();
+            storedImages.computeIfPresent(invocation.getArgument(0), (name, image) -> {
+                if (image.getRefCount() <= 1)
+                    return image;
+                released.set(true);
+                return new StoredImage(name, image.getRefCount() - 1);
+            });
+            return released.get() ? 1 : 0;
+        });
+        when(repository.releaseLastReference(anyString())).thenAnswer(invocation -> {
+            AtomicBoolean released = new AtomicBoolean();
+            storedImages.computeIfPresent(invocation.getArgument(0), (name, image) -> {
+                if (image.getRefCount() > 1)
+                    return image;
+                released.set(true);
+                return null;
+            });
+            return released.get() ? 1 : 0;
+        });
+        return repository;
+    }
 }
@@ -0,0 +1,26 @@
+package com.iammanh.hoaxifyservice.file;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ImageResizerTest {
+
+    private final ImageResizer imageResizer = new ImageResizer();
+
+    @Test
+    public void resize_whenImageIsLargerThanSize_keepsAspectRatio() {
+        BufferedImage source = new BufferedImage(380, 229, BufferedImage.TYPE_INT_RGB);
+        BufferedImage resized = imageResizer.resize(source, 64);
+        assertThat(resized.getWidth()).isEqualTo(64);
+        assertThat(resized.getHeight()).isEqualTo(39);
+    }
+
+    @Test
+    public void resize_whenImageIsSmallerThanSize_returnsSameImage() {
+        BufferedImage source = new BufferedImage(20, 30, BufferedImage.TYPE_INT_ARGB);
+        assertThat(imageResizer.resize(source, 32)).isSameAs(source);
+    }
+}
@@ -0,0 +1,70 @@
+package com.iammanh.hoaxifyservice.file;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LocalFileStorageTest {
+
+    Path root = Paths.get("storage-test");
+
+    LocalFileStorage fileStorage;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(root);
+        fileStorage = new LocalFileStorage(root);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    @Test
+    public void put_whenFolderDoesNotExist_storesFileUnderKey() throws IOException {
+        Path source = Files.write(root.resolve("source.tmp"), "content".getBytes(StandardCharsets.UTF_8));
+
+        fileStorage.put("profile/abc.png", source);
+
+        assertThat(fileStorage.exists("profile/abc.png")).isTrue();
+        assertThat(fileStorage.get("profile/abc.png").get()).hasContent("content");
+    }
+
+    @Test
+    public void stream_whenFileIsStored_readsContent() throws IOException {
+        fileStorage.put("profile/abc.png", Files.write(root.resolve("source.tmp"), "content".getBytes(StandardCharsets.UTF_8)));
+
+        try (InputStream in = fileStorage.stream("profile/abc.png")) {
+            assertThat(in).hasSameContentAs(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    public void delete_whenFileIsStored_fileIsGone() throws IOException {
+        fileStorage.put("profile/abc.png", Files.write(root.resolve("source.tmp"), "content".getBytes(StandardCharsets.UTF_8)));
+
+        fileStorage.delete("profile/abc.png");
+
+        assertThat(fileStorage.exists("profile/abc.png")).isFalse();
+        assertThat(fileStorage.get("profile/abc.png")).isEmpty();
+    }
+
+    @Test
+    public void get_whenKeyLeavesTheRoot_throwsIllegalArgument() {
+        assertThatThrownBy(() -> fileStorage.get("../outside.png"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,127 @@
+package com.iammanh.hoaxifyservice.file;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class S3FileStorageTest {
+
+    AppConfiguration appConfiguration;
+
+    S3Client s3;
+
+    S3FileStorage fileStorage;
+
+    @Before
+    public void setUp() throws IOException {
+        appConfiguration = new AppConfiguration();
+        appConfiguration.setUploadPath("uploads-test");
+        appConfiguration.setS3Bucket("hoaxify");
+        appConfiguration.setS3PartSize(5);
+        s3 = mock(S3Client.class);
+        fileStorage = new S3FileStorage(appConfiguration, s3);
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        fileStorage.close();
+        FileUtils.deleteDirectory(new File(appConfiguration.getFullCachePath()));
+    }
+
+    @Test
+    public void put_whenFileIsLargerThanPartSize_uploadsPartsAndCompletesThemInOrder() throws IOException {
+        when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("etag-" + invocation.<UploadPartRequest>getArgument(0).partNumber())
+                        .build());
+        Path source = Files.createTempFile(Files.createDirectories(new File(appConfiguration.getUploadPath()).toPath()), "source-", ".tmp");
+        Files.write(source, "0123456789ab".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            fileStorage.put("profile/abc.png", source);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+
+        verify(s3, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        ArgumentCaptor<CompleteMultipartUploadRequest> completed = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3).completeMultipartUpload(completed.capture());
+        assertThat(completed.getValue().multipartUpload().parts().stream().map(CompletedPart::eTag).collect(Collectors.toList()))
+                .containsExactly("etag-1", "etag-2", "etag-3");
+    }
+
+    @Test
+    public void get_whenObjectWasReadBefore_servesLocalCopy() throws IOException {
+        when(s3.getObject(any(GetObjectRequest.class), any(Path.class))).thenAnswer(invocation -> {
+            Files.write(invocation.<Path>getArgument(1), "content".getBytes(StandardCharsets.UTF_8));
+            return GetObjectResponse.builder().contentLength(7L).lastModified(Instant.ofEpochMilli(1000)).build();
+        });
+
+        fileStorage.get("profile/abc.png");
+        Path cached = fileStorage.get("profile/abc.png").get();
+
+        assertThat(cached).hasContent("content");
+        verify(s3, times(1)).getObject(any(GetObjectRequest.class), any(Path.class));
+    }
+
+    @Test
+    public void stat_whenObjectIsNotCached_readsMetadataWithoutDownloading() throws IOException {
+        when(s3.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(HeadObjectResponse.builder().contentLength(7L).lastModified(Instant.ofEpochMilli(1000)).build());
+
+        FileMetadata metadata = fileStorage.stat("profile/abc.png").get();
+
+        assertThat(metadata).isEqualTo(new FileMetadata(7, 1000));
+        verify(s3, never()).getObject(any(GetObjectRequest.class), any(Path.class));
+    }
+
+    @Test
+    public void stat_whenObjectDoesNotExist_returnsEmpty() throws IOException {
+        when(s3.headObject(any(HeadObjectRequest.class)))
+                .thenThrow(NoSuchKeyException.builder().statusCode(404).build());
+
+        assertThat(fileStorage.stat("profile/abc.png")).isEmpty();
+    }
+
+    @Test
+    public void get_whenObjectDoesNotExist_returnsEmpty() throws IOException {
+        when(s3.getObject(any(GetObjectRequest.class), any(Path.class)))
+                .thenThrow(NoSuchKeyException.builder().statusCode(404).build());
+
+        assertThat(fileStorage.get("profile/abc.png")).isEmpty();
+    }
+}
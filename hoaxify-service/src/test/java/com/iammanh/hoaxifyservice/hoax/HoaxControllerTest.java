@@ -1,13 +1,22 @@
 package com.iammanh.hoaxifyservice.hoax;
 
 import com.iammanh.hoaxifyservice.error.ApiError;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxBatchItemVM;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxBatchVM;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxSliceVM;
 import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
 import com.iammanh.hoaxifyservice.model.TestPage;
+import com.iammanh.hoaxifyservice.sql.SqlCapture;
+import com.iammanh.hoaxifyservice.sql.SqlRecorder;
 import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserCache;
 import com.iammanh.hoaxifyservice.user.UserRepository;
 import com.iammanh.hoaxifyservice.user.UserService;
+import com.iammanh.hoaxifyservice.user.vm.UserUpdateVM;
 import com.iammanh.hoaxifyservice.utils.TestUtil;
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
@@ -18,10 +27,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
@@ -29,8 +41,11 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceUnit;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static com.iammanh.hoaxifyservice.utils.TestUtil.*;
@@ -63,10 +78,24 @@ public class HoaxControllerTest {
     @PersistenceUnit
     EntityManagerFactory entityManagerFactory;
 
+    @Autowired
+    private SqlRecorder sqlRecorder;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private HoaxFeedCache hoaxFeedCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @After
     public void tearDown() {
         hoaxRepository.deleteAll();
+        hoaxFeedCache.invalidateAll();
         userRepository.deleteAll();
+        userCache.invalidateAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
     }
 
@@ -109,6 +138,18 @@ public class HoaxControllerTest {
         assertThat(hoaxRepository.count()).isEqualTo(1);
     }
 
+    @Test
+    public void postHoax_whenAnotherInstanceTookAnIdInBetween_newHoaxGetsALargerId() {
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+        postHoax(createValidHoax(), HoaxVM.class);
+        long takenElsewhere = jdbcTemplate.queryForObject("select next value for hoax_sequence", Long.class);
+
+        long id = postHoax(createValidHoax(), HoaxVM.class).getBody().getId();
+
+        assertThat(id).isGreaterThan(takenElsewhere);
+    }
+
     @Test
     public void postHoax_whenHoaxIsValidAndUserIsAuthorized_hoaxSavedToDatabaseWithTimestamp() {
         userService.save(createValidUser("user1"));
@@ -513,6 +554,327 @@ public class HoaxControllerTest {
         assertThat(response.getBody().get("count")).isEqualTo(1);
     }
 
+    @Test
+    public void getHoaxSlice_whenThereAreMoreHoaxesThanLimit_receiveLimitedHoaxesWithNextCursor() {
+        User user1 = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 5).forEach(i -> hoaxService.saveHoax(createValidHoax(), user1));
+
+        ResponseEntity<HoaxSliceVM> response = testRestTemplate.getForEntity(API_V1_HOAXES + "?limit=3", HoaxSliceVM.class);
+        assertThat(response.getBody().getContent().size()).isEqualTo(3);
+        assertThat(response.getBody().getNextCursor()).isNotNull();
+        assertThat(response.getBody().isLast()).isFalse();
+    }
+
+    @Test
+    public void getHoaxSlice_whenNextCursorProvided_receiveRemainingHoaxesNewestFirst() {
+        User user1 = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 5).forEach(i -> hoaxService.saveHoax(createValidHoax(), user1));
+        HoaxSliceVM first = testRestTemplate.getForEntity(API_V1_HOAXES + "?limit=3", HoaxSliceVM.class).getBody();
+
+        ResponseEntity<HoaxSliceVM> response = testRestTemplate.getForEntity(API_V1_HOAXES + "?limit=3&cursor=" + first.getNextCursor(), HoaxSliceVM.class);
+        List<HoaxVM> content = response.getBody().getContent();
+        assertThat(content.size()).isEqualTo(2);
+        assertThat(content.get(0).getId()).isLessThan(first.getContent().get(2).getId());
+        assertThat(response.getBody().isLast()).isTrue();
+    }
+
+    @Test
+    public void getHoaxSlice_whenBeforeIdProvided_receiveHoaxesOlderThanId() {
+        User user1 = userService.save(createValidUser("user1"));
+        hoaxService.saveHoax(createValidHoax(), user1);
+        hoaxService.saveHoax(createValidHoax(), user1);
+        Hoax third = hoaxService.saveHoax(createValidHoax(), user1);
+        hoaxService.saveHoax(createValidHoax(), user1);
+
+        ResponseEntity<HoaxSliceVM> response = testRestTemplate.getForEntity(API_V1_HOAXES + "?limit=5&before=" + third.getId(), HoaxSliceVM.class);
+        assertThat(response.getBody().getContent().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void getHoaxSliceOfUser_whenMultipleUsersHaveHoaxes_receiveOnlyHoaxesOfUser() {
+        User user1 = userService.save(createValidUser("user1"));
+        User user2 = userService.save(createValidUser("user2"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.saveHoax(createValidHoax(), user1));
+        IntStream.rangeClosed(1, 2).forEach(i -> hoaxService.saveHoax(createValidHoax(), user2));
+
+        ResponseEntity<HoaxSliceVM> response = testRestTemplate.getForEntity("/api/v1/users/user2/hoaxes?limit=5", HoaxSliceVM.class);
+        assertThat(response.getBody().getContent().size()).isEqualTo(2);
+        assertThat(response.getBody().getNextCursor()).isNull();
+    }
+
+    @Test
+    public void getHoaxSlice_whenCursorIsInvalid_receiveBadRequest() {
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_V1_HOAXES + "?limit=3&cursor=not-a-cursor", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void getHoaxes_whenFirstPageIsRequestedAgain_noStatementIsExecuted() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.saveHoax(createValidHoax(), user));
+        String path = API_V1_HOAXES + "?page=0&size=5&sort=id,desc";
+        countStatements(path);
+
+        assertThat(countStatements(path)).isEqualTo(0);
+    }
+
+    @Test
+    public void getHoaxes_whenHoaxIsSavedAfterFirstPageIsCached_receiveNewHoaxFirst() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.saveHoax(createValidHoax(), user));
+        String path = API_V1_HOAXES + "?page=0&size=2&sort=id,desc";
+        testRestTemplate.getForEntity(path, String.class);
+        Hoax newest = hoaxService.saveHoax(createValidHoax(), user);
+
+        ResponseEntity<TestPage<HoaxVM>> response = testRestTemplate.exchange(path, HttpMethod.GET, null, new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+        assertThat(response.getBody().getTotalElements()).isEqualTo(4);
+        assertThat(response.getBody().getContent().get(0).getId()).isEqualTo(newest.getId());
+    }
+
+    @Test
+    public void getHoaxes_whenOldestFirstIsRequestedAfterFirstPageIsCached_receiveOldestHoaxes() {
+        User user = userService.save(createValidUser("user1"));
+        Hoax oldest = hoaxService.saveHoax(createValidHoax(), user);
+        IntStream.rangeClosed(1, 3).forEach(i -> hoaxService.saveHoax(createValidHoax(), user));
+        testRestTemplate.getForEntity(API_V1_HOAXES + "?page=0&size=2&sort=id,desc", String.class);
+
+        ResponseEntity<TestPage<HoaxVM>> response = testRestTemplate.exchange(API_V1_HOAXES + "?page=0&size=2&sort=id,asc", HttpMethod.GET, null, new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+        assertThat(response.getBody().getContent().get(0).getId()).isEqualTo(oldest.getId());
+    }
+
+    @Test
+    public void getHoaxes_whenETagOfFirstPageMatches_receiveNotModified() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.saveHoax(createValidHoax(), user);
+        String path = API_V1_HOAXES + "?page=0&size=5&sort=id,desc";
+        String etag = testRestTemplate.getForEntity(path, String.class).getHeaders().getETag();
+
+        ResponseEntity<String> response = getIfNoneMatch(path, etag);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    public void getHoaxes_whenETagOfFirstPageMatches_noStatementIsExecuted() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.saveHoax(createValidHoax(), user);
+        String path = API_V1_HOAXES + "?page=0&size=5&sort=id,desc";
+        String etag = testRestTemplate.getForEntity(path, String.class).getHeaders().getETag();
+
+        try (SqlCapture capture = sqlRecorder.capture()) {
+            getIfNoneMatch(path, etag);
+            capture.assertStatementsAtMost(0);
+        }
+    }
+
+    @Test
+    public void getHoaxes_whenHoaxIsSavedAfterETagWasSent_receiveOkWithNewETag() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.saveHoax(createValidHoax(), user);
+        String path = API_V1_HOAXES + "?page=0&size=5&sort=id,desc";
+        String etag = testRestTemplate.getForEntity(path, String.class).getHeaders().getETag();
+        hoaxService.saveHoax(createValidHoax(), user);
+
+        ResponseEntity<String> response = getIfNoneMatch(path, etag);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void getHoaxes_whenAuthorIsUpdatedAfterETagWasSent_receiveOk() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.saveHoax(createValidHoax(), user);
+        String path = API_V1_HOAXES + "?page=0&size=5&sort=id,desc";
+        String etag = testRestTemplate.getForEntity(path, String.class).getHeaders().getETag();
+        UserUpdateVM userUpdateVM = new UserUpdateVM();
+        userUpdateVM.setDisplayName("updated-display-name");
+        userService.update(user.getId(), userUpdateVM);
+
+        assertThat(getIfNoneMatch(path, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void getHoaxes_whenPageIsNotFirst_receiveNoETag() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.saveHoax(createValidHoax(), user);
+
+        ResponseEntity<String> response = testRestTemplate.getForEntity(API_V1_HOAXES + "?page=1&size=5&sort=id,desc", String.class);
+        assertThat(response.getHeaders().getETag()).isNull();
+    }
+
+    @Test
+    public void getNewHoaxes_whenOldestFirstIsRequestedAfterFirstPageIsCached_receiveAscendingIds() {
+        User user = userService.save(createValidUser("user1"));
+        Hoax first = hoaxService.saveHoax(createValidHoax(), user);
+        testRestTemplate.getForEntity(API_V1_HOAXES + "?page=0&size=5&sort=id,desc", String.class);
+        Hoax second = hoaxService.saveHoax(createValidHoax(), user);
+        Hoax third = hoaxService.saveHoax(createValidHoax(), user);
+
+        String path = API_V1_HOAXES + "/" + first.getId() + "?direction=after&sort=id,asc";
+        ResponseEntity<List<HoaxVM>> response = testRestTemplate.exchange(path, HttpMethod.GET, null, new ParameterizedTypeReference<List<HoaxVM>>() {
+        });
+        assertThat(response.getBody()).extracting(HoaxVM::getId).containsExactly(second.getId(), third.getId());
+    }
+
+    @Test
+    public void getHoaxesOfUser_whenAuthorIsUpdatedAfterFeedIsCached_receiveUpdatedDisplayName() {
+        User user = userService.save(createValidUser("user1"));
+        hoaxService.saveHoax(createValidHoax(), user);
+        String path = "/api/v1/users/user1/hoaxes?page=0&size=5&sort=id,desc";
+        testRestTemplate.getForEntity(path, String.class);
+        UserUpdateVM userUpdateVM = new UserUpdateVM();
+        userUpdateVM.setDisplayName("updated-display-name");
+        authenticate("user1");
+        testRestTemplate.exchange("/api/v1/users/" + user.getId(), HttpMethod.PUT, new HttpEntity<>(userUpdateVM), Object.class);
+
+        ResponseEntity<TestPage<HoaxVM>> response = testRestTemplate.exchange(path, HttpMethod.GET, null, new ParameterizedTypeReference<TestPage<HoaxVM>>() {
+        });
+        assertThat(response.getBody().getContent().get(0).getUser().getDisplayName()).isEqualTo("updated-display-name");
+    }
+
+    @Test
+    public void getHoaxes_whenHoaxesHaveManyAuthors_statementCountStaysSameAsForOneAuthor() {
+        assertStatementCountIndependentOfAuthors(API_V1_HOAXES + "?page=0&size=5");
+    }
+
+    @Test
+    public void getHoaxSlice_whenHoaxesExist_executesOneStatement() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 10).forEach(i -> hoaxService.saveHoax(createValidHoax(), user));
+
+        try (SqlCapture capture = sqlRecorder.capture()) {
+            testRestTemplate.getForEntity(API_V1_HOAXES + "?limit=5", String.class);
+            capture.assertStatementsAtMost(1);
+        }
+    }
+
+    @Test
+    public void getOldHoaxes_whenHoaxesExist_executesPageAndCountStatementsOnly() {
+        User user = userService.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 10).forEach(i -> hoaxService.saveHoax(createValidHoax(), user));
+
+        try (SqlCapture capture = sqlRecorder.capture()) {
+            testRestTemplate.getForEntity(API_V1_HOAXES + "/" + Long.MAX_VALUE + "?direction=before&page=0&size=5&sort=id,desc", String.class);
+            capture.assertStatementsAtMost(2);
+        }
+    }
+
+    @Test
+    public void getOldHoaxes_whenHoaxesHaveManyAuthors_statementCountStaysSameAsForOneAuthor() {
+        assertStatementCountIndependentOfAuthors(API_V1_HOAXES + "/" + Long.MAX_VALUE + "?direction=before&page=0&size=5&sort=id,desc");
+    }
+
+    @Test
+    public void getNewHoaxes_whenHoaxesHaveManyAuthors_statementCountStaysSameAsForOneAuthor() {
+        assertStatementCountIndependentOfAuthors(API_V1_HOAXES + "/0?direction=after&sort=id,desc");
+    }
+
+    @Test
+    public void getHoaxSlice_whenHoaxesHaveManyAuthors_statementCountStaysSameAsForOneAuthor() {
+        assertStatementCountIndependentOfAuthors(API_V1_HOAXES + "?limit=5");
+    }
+
+    @Test
+    public void postHoaxBatch_whenUserIsUnauthorized_receiveUnauthorized() {
+        ResponseEntity<Object> response = postHoaxBatch(Collections.singletonList(createValidHoax()), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postHoaxBatch_whenBatchIsEmpty_receiveBadRequest() {
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+        ResponseEntity<Object> response = postHoaxBatch(Collections.emptyList(), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void postHoaxBatch_whenAllHoaxesAreValid_allHoaxesSavedToDatabase() {
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+
+        ResponseEntity<HoaxBatchVM> response = postHoaxBatch(validHoaxes(3), HoaxBatchVM.class);
+
+        assertThat(response.getBody().getCreated()).isEqualTo(3);
+        assertThat(hoaxRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void postHoaxBatch_whenOneHoaxIsInvalid_othersAreSavedAndInvalidOneIsReported() {
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+        Hoax invalid = new Hoax();
+        invalid.setContent("short");
+        List<Hoax> hoaxes = Arrays.asList(createValidHoax(), invalid, createValidHoax());
+
+        ResponseEntity<HoaxBatchVM> response = postHoaxBatch(hoaxes, HoaxBatchVM.class);
+
+        assertThat(response.getBody().getRejected()).isEqualTo(1);
+        assertThat(response.getBody().getItems().get(1).getId()).isNull();
+        assertThat(response.getBody().getItems().get(1).getValidationErrors()).containsKey("content");
+        assertThat(hoaxRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void postHoaxBatch_whenHoaxesAreSaved_receiveIdsInRequestOrder() {
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+
+        ResponseEntity<HoaxBatchVM> response = postHoaxBatch(validHoaxes(3), HoaxBatchVM.class);
+
+        List<Long> ids = response.getBody().getItems().stream().map(HoaxBatchItemVM::getId).collect(Collectors.toList());
+        assertThat(ids).isSorted();
+        assertThat(hoaxRepository.findAll()).extracting(Hoax::getId).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    public void postHoaxBatch_whenBatchGrows_statementCountStaysTheSame() {
+        userService.save(createValidUser("user1"));
+        authenticate("user1");
+        postHoaxBatch(validHoaxes(1), Object.class);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        postHoaxBatch(validHoaxes(2), Object.class);
+        long smallBatchStatements = statistics.getPrepareStatementCount();
+        statistics.clear();
+        postHoaxBatch(validHoaxes(40), Object.class);
+        long largeBatchStatements = statistics.getPrepareStatementCount();
+
+        // either batch may have to fetch the next block of ids
+        assertThat(largeBatchStatements).isLessThanOrEqualTo(smallBatchStatements + 1);
+    }
+
+    private void assertStatementCountIndependentOfAuthors(String path) {
+        User author = userService.save(createValidUser("author0"));
+        IntStream.rangeClosed(1, 5).forEach(i -> hoaxService.saveHoax(createValidHoax(), author));
+        long singleAuthorStatements = countStatements(path);
+
+        hoaxRepository.deleteAll();
+        hoaxFeedCache.invalidateAll();
+        IntStream.rangeClosed(1, 5).forEach(i ->
+                hoaxService.saveHoax(createValidHoax(), userService.save(createValidUser("author" + i))));
+        long multipleAuthorStatements = countStatements(path);
+
+        assertThat(multipleAuthorStatements).isEqualTo(singleAuthorStatements);
+    }
+
+    private ResponseEntity<String> getIfNoneMatch(String path, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return testRestTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private long countStatements(String path) {
+        try (SqlCapture capture = sqlRecorder.capture()) {
+            ResponseEntity<String> response = testRestTemplate.getForEntity(path, String.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            return capture.getStatementCount();
+        }
+    }
+
     private <T> ResponseEntity<T> getNewHoaxCount(long id, ParameterizedTypeReference<T> responseType) {
         String path = API_V1_HOAXES + "/" + id + "?direction=after&count=true";
         return testRestTemplate.exchange(path, HttpMethod.GET, null, responseType);
@@ -527,6 +889,14 @@ public class HoaxControllerTest {
         return testRestTemplate.postForEntity(API_V1_HOAXES, hoax, responseType);
     }
 
+    private <T> ResponseEntity<T> postHoaxBatch(List<Hoax> hoaxes, Class<T> responseType) {
+        return testRestTemplate.postForEntity(API_V1_HOAXES + "/batch", hoaxes, responseType);
+    }
+
+    private List<Hoax> validHoaxes(int count) {
+        return IntStream.range(0, count).mapToObj(i -> createValidHoax()).collect(Collectors.toList());
+    }
+
     private <T> ResponseEntity<T> getHoaxes(ParameterizedTypeReference<T> responseType) {
         return testRestTemplate.exchange(API_V1_HOAXES, HttpMethod.GET, null, responseType);
     }
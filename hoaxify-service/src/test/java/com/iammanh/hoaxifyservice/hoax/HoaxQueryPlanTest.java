@@ -0,0 +1,101 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.IntStream;
+
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidHoax;
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Prints the H2 plans of the feed queries with and without the indexes from
+ * {@code V2__add_feed_indexes.sql}, and checks that the indexed plans use them.
+ * Runs outside the test transaction because H2 commits on DDL.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class HoaxQueryPlanTest {
+
+    private static final Logger log = LoggerFactory.getLogger(HoaxQueryPlanTest.class);
+
+    private static final String USER_FEED = "select * from hoax where user_id = %d and id < %d order by id desc limit 5";
+    private static final String GLOBAL_FEED = "select * from hoax where id < %d order by id desc limit 5";
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    HoaxRepository hoaxRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @Before
+    public void setUp() {
+        user = userRepository.save(createValidUser("user1"));
+        IntStream.rangeClosed(1, 50).forEach(i -> {
+            Hoax hoax = createValidHoax();
+            hoax.setUser(user);
+            hoaxRepository.save(hoax);
+        });
+        jdbcTemplate.execute("analyze");
+    }
+
+    @After
+    public void tearDown() {
+        hoaxRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void userFeed_withIndexes_usesUserIdIdIndex() {
+        String userFeed = String.format(USER_FEED, user.getId(), Long.MAX_VALUE);
+        String before = withoutIndex("idx_hoax_user_id_id", "on hoax (user_id, id desc)", userFeed);
+        String after = explain(userFeed);
+        log.info("user feed plan before:\n{}\nafter:\n{}", before, after);
+
+        assertThat(after).containsIgnoringCase("idx_hoax_user_id_id");
+    }
+
+    @Test
+    public void globalFeed_withIndexes_readsIndexSorted() {
+        String globalFeed = String.format(GLOBAL_FEED, Long.MAX_VALUE);
+        String before = withoutIndex("idx_hoax_id_desc", "on hoax (id desc)", globalFeed);
+        String after = explain(globalFeed);
+        log.info("global feed plan before:\n{}\nafter:\n{}", before, after);
+
+        assertThat(after).containsIgnoringCase("index sorted");
+    }
+
+    private String withoutIndex(String index, String definition, String sql) {
+        jdbcTemplate.execute("drop index " + index);
+        try {
+            return explain(sql);
+        } finally {
+            jdbcTemplate.execute("create index " + index + " " + definition);
+        }
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("explain " + sql, String.class);
+    }
+}
@@ -0,0 +1,105 @@
+package com.iammanh.hoaxifyservice.hoax;
+
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserCache;
+import com.iammanh.hoaxifyservice.user.UserRepository;
+import com.iammanh.hoaxifyservice.user.UserService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidHoax;
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+public class HoaxStreamControllerTest {
+
+    private static final String API_V1_HOAXES_STREAM = "/api/v1/hoaxes/stream";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private HoaxRepository hoaxRepository;
+
+    @Autowired
+    private HoaxService hoaxService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private HoaxFeedCache hoaxFeedCache;
+
+    @After
+    public void tearDown() {
+        hoaxRepository.deleteAll();
+        hoaxFeedCache.invalidateAll();
+        userRepository.deleteAll();
+        userCache.invalidateAll();
+    }
+
+    @Test
+    public void streamHoaxes_whenClientSubscribes_receiveAsyncEventStream() throws Exception {
+        mockMvc.perform(get(API_V1_HOAXES_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    public void streamHoaxes_whenHoaxIsSaved_receiveHoaxEvent() throws Exception {
+        User user = userService.save(createValidUser("user1"));
+        MvcResult result = mockMvc.perform(get(API_V1_HOAXES_STREAM)).andReturn();
+
+        Hoax hoax = hoaxService.saveHoax(createValidHoax(), user);
+
+        String body = awaitContent(result, "event:hoax");
+        assertThat(body).contains("id:" + hoax.getId());
+    }
+
+    @Test
+    public void streamHoaxesOfUser_whenAnotherUserSavesHoax_receiveNoHoaxEvent() throws Exception {
+        userService.save(createValidUser("user1"));
+        User user2 = userService.save(createValidUser("user2"));
+        MvcResult result = mockMvc.perform(get("/api/v1/users/user1/hoaxes/stream")).andReturn();
+
+        hoaxService.saveHoax(createValidHoax(), user2);
+
+        Thread.sleep(200);
+        assertThat(result.getResponse().getContentAsString()).doesNotContain("event:hoax");
+    }
+
+    @Test
+    public void streamHoaxesOfUser_whenUserDoesNotExist_receiveNotFound() throws Exception {
+        mockMvc.perform(get("/api/v1/users/unknown-user/hoaxes/stream"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String awaitContent(MvcResult result, String expected) throws Exception {
+        String body = result.getResponse().getContentAsString();
+        for (int i = 0; i < 50 && !body.contains(expected); i++) {
+            Thread.sleep(20);
+            body = result.getResponse().getContentAsString();
+        }
+        return body;
+    }
+}
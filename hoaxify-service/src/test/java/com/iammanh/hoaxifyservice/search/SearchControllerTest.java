@@ -0,0 +1,170 @@
+package com.iammanh.hoaxifyservice.search;
+
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxFeedCache;
+import com.iammanh.hoaxifyservice.hoax.HoaxRepository;
+import com.iammanh.hoaxifyservice.hoax.HoaxService;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxSliceVM;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserCache;
+import com.iammanh.hoaxifyservice.user.UserRepository;
+import com.iammanh.hoaxifyservice.user.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class SearchControllerTest {
+
+    private static final String API_V1_SEARCH = "/api/v1/hoaxes/search";
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private HoaxService hoaxService;
+
+    @Autowired
+    private HoaxRepository hoaxRepository;
+
+    @Autowired
+    private HoaxFeedCache hoaxFeedCache;
+
+    @Autowired
+    private HoaxSearchService hoaxSearchService;
+
+    private User user;
+
+    @Before
+    public void setUp() throws IOException {
+        hoaxSearchService.rebuild();
+        user = userService.save(createValidUser("user1"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        hoaxRepository.deleteAll();
+        hoaxFeedCache.invalidateAll();
+        userRepository.deleteAll();
+        userCache.invalidateAll();
+        hoaxSearchService.rebuild();
+    }
+
+    @Test
+    public void searchHoaxes_whenQueryIsBlank_receiveBadRequest() {
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_V1_SEARCH + "?q= ", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void searchHoaxes_whenHoaxContainsAllWords_receiveHoax() {
+        Hoax match = post("the quick brown fox jumps over the lazy dog");
+        post("a completely different story about cats");
+
+        assertThat(search("brown FOX")).containsExactly(match.getId());
+    }
+
+    @Test
+    public void searchHoaxes_whenHoaxContainsOnlySomeWords_doesNotReceiveHoax() {
+        post("the quick brown fox jumps over the lazy dog");
+
+        assertThat(search("brown cat")).isEmpty();
+    }
+
+    @Test
+    public void searchHoaxes_whenOlderHoaxIsMoreRelevant_receiveItFirst() {
+        Hoax relevant = post("kiwi kiwi kiwi, all about kiwi");
+        Hoax passing = post("this long hoax mentions a kiwi only once among many other words");
+
+        assertThat(search("kiwi")).containsExactly(relevant.getId(), passing.getId());
+    }
+
+    @Test
+    public void searchHoaxes_whenHoaxesAreEquallyRelevant_receiveNewerFirst() {
+        Hoax older = post("equally relevant hoax about mangos");
+        Hoax newer = post("equally relevant hoax about mangos");
+
+        assertThat(search("mangos")).containsExactly(newer.getId(), older.getId());
+    }
+
+    @Test
+    public void searchHoaxes_whenFollowingCursor_receiveEveryMatchOnce() {
+        List<Long> posted = IntStream.range(0, 7)
+                .mapToObj(i -> post("paging through search results number " + i).getId())
+                .collect(Collectors.toList());
+
+        List<Long> found = new ArrayList<>();
+        String path = API_V1_SEARCH + "?q=paging&limit=3";
+        HoaxSliceVM page = testRestTemplate.getForObject(path, HoaxSliceVM.class);
+        found.addAll(ids(page));
+        while (!page.isLast()) {
+            page = testRestTemplate.getForObject(path + "&cursor=" + page.getNextCursor(), HoaxSliceVM.class);
+            found.addAll(ids(page));
+        }
+
+        assertThat(found).containsExactlyInAnyOrderElementsOf(posted);
+    }
+
+    @Test
+    public void searchHoaxes_whenCursorIsInvalid_receiveBadRequest() {
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_V1_SEARCH + "?q=kiwi&cursor=not-a-cursor", Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void rebuild_whenHoaxWasSavedWithoutService_hoaxIsFound() throws IOException {
+        Hoax hoax = new Hoax();
+        hoax.setContent("saved straight to the database");
+        hoax.setTimestamp(new Date());
+        hoax.setUser(user);
+        hoaxRepository.save(hoax);
+
+        hoaxSearchService.rebuild();
+
+        assertThat(search("straight database")).containsExactly(hoax.getId());
+    }
+
+    private Hoax post(String content) {
+        Hoax hoax = new Hoax();
+        hoax.setContent(content);
+        return hoaxService.saveHoax(hoax, user);
+    }
+
+    private List<Long> search(String q) {
+        return ids(testRestTemplate.getForObject(API_V1_SEARCH + "?q=" + q, HoaxSliceVM.class));
+    }
+
+    private static List<Long> ids(HoaxSliceVM slice) {
+        return slice.getContent().stream().map(HoaxVM::getId).collect(Collectors.toList());
+    }
+}
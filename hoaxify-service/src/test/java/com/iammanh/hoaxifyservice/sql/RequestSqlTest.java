@@ -0,0 +1,37 @@
+package com.iammanh.hoaxifyservice.sql;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequestSqlTest {
+
+    @Test
+    public void normalize_whenStatementHasLiterals_replacesThemWithParameters() {
+        assertThat(RequestSql.normalize("select * from hoax where user_id = 42 and content = 'it''s'"))
+                .isEqualTo("select * from hoax where user_id = ? and content = ?");
+    }
+
+    @Test
+    public void normalize_whenStatementHasParameterList_collapsesIt() {
+        assertThat(RequestSql.normalize("select * from hoax\n  where id in (?, ?, ?)"))
+                .isEqualTo("select * from hoax where id in (?)");
+    }
+
+    @Test
+    public void normalize_whenStatementHasGeneratedAliases_keepsThem() {
+        assertThat(RequestSql.normalize("select hoax0_.id as id1_2_ from hoax hoax0_"))
+                .isEqualTo("select hoax0_.id as id1_2_ from hoax hoax0_");
+    }
+
+    @Test
+    public void describe_whenStatementRepeats_countsIt() {
+        RequestSql sql = new RequestSql("GET /api/v1/hoaxes");
+        for (int i = 0; i < 3; i++) {
+            sql.started();
+            sql.finished("select * from user where id = " + i);
+        }
+
+        assertThat(sql.describe()).contains("GET /api/v1/hoaxes: 3 statements").contains("3x select * from user where id = ?");
+    }
+}
@@ -0,0 +1,234 @@
+package com.iammanh.hoaxifyservice.timeline;
+
+import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.hoax.Hoax;
+import com.iammanh.hoaxifyservice.hoax.HoaxFeedCache;
+import com.iammanh.hoaxifyservice.hoax.HoaxRepository;
+import com.iammanh.hoaxifyservice.hoax.HoaxService;
+import com.iammanh.hoaxifyservice.hoax.HoaxesCreatedEvent;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxSliceVM;
+import com.iammanh.hoaxifyservice.hoax.vm.HoaxVM;
+import com.iammanh.hoaxifyservice.user.User;
+import com.iammanh.hoaxifyservice.user.UserCache;
+import com.iammanh.hoaxifyservice.user.UserRepository;
+import com.iammanh.hoaxifyservice.user.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.support.BasicAuthenticationInterceptor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidHoax;
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class TimelineControllerTest {
+
+    private static final String API_V1_TIMELINE = "/api/v1/timeline";
+
+    @Autowired
+    TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private HoaxService hoaxService;
+
+    @Autowired
+    private HoaxRepository hoaxRepository;
+
+    @Autowired
+    private HoaxFeedCache hoaxFeedCache;
+
+    @Autowired
+    private AppConfiguration appConfiguration;
+
+    @Autowired
+    private TimelineService timelineService;
+
+    private long defaultFanOutLimit;
+    private User user1;
+    private User user2;
+
+    @Before
+    public void setUp() {
+        defaultFanOutLimit = appConfiguration.getTimelineFanOutLimit();
+        user1 = userService.save(createValidUser("user1"));
+        user2 = userService.save(createValidUser("user2"));
+        authenticate("user1");
+    }
+
+    @After
+    public void tearDown() {
+        appConfiguration.setTimelineFanOutLimit(defaultFanOutLimit);
+        hoaxRepository.deleteAll();
+        hoaxFeedCache.invalidateAll();
+        userRepository.deleteAll();
+        userCache.invalidateAll();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+    }
+
+    private void authenticate(String username) {
+        testRestTemplate.getRestTemplate().getInterceptors()
+                .add(new BasicAuthenticationInterceptor(username, "P4ssword"));
+    }
+
+    @Test
+    public void getTimeline_whenUserIsUnauthorized_receiveUnauthorized() {
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        ResponseEntity<Object> response = testRestTemplate.getForEntity(API_V1_TIMELINE, Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void getTimeline_whenUserPostedHoax_receiveOwnHoax() {
+        Hoax hoax = hoaxService.saveHoax(createValidHoax(), user1);
+
+        assertThat(timelineIds()).containsExactly(hoax.getId());
+    }
+
+    @Test
+    public void postFollower_whenUserIsUnauthorized_receiveUnauthorized() {
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        ResponseEntity<Object> response = follow("user2");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postFollower_whenUserFollowsThemselves_receiveBadRequest() {
+        ResponseEntity<Object> response = follow("user1");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void postFollower_whenUserIsUnknown_receiveNotFound() {
+        ResponseEntity<Object> response = follow("unknown-user");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void postFollower_whenFollowedTwice_followerCountIsOne() {
+        follow("user2");
+        follow("user2");
+
+        assertThat(userRepository.findByUsername("user2").get().getFollowerCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getTimeline_whenFolloweePostsHoax_receiveFolloweeHoax() {
+        follow("user2");
+        Hoax hoax = hoaxService.saveHoax(createValidHoax(), user2);
+
+        assertThat(timelineIds()).containsExactly(hoax.getId());
+    }
+
+    @Test
+    public void getTimeline_whenNotFollowing_doesNotReceiveOtherUsersHoaxes() {
+        hoaxService.saveHoax(createValidHoax(), user2);
+
+        assertThat(timelineIds()).isEmpty();
+    }
+
+    @Test
+    public void postFollower_whenFolloweeHasHoaxes_timelineIsBackfilled() {
+        Hoax older = hoaxService.saveHoax(createValidHoax(), user2);
+        Hoax own = hoaxService.saveHoax(createValidHoax(), user1);
+        Hoax newer = hoaxService.saveHoax(createValidHoax(), user2);
+
+        follow("user2");
+
+        assertThat(timelineIds()).containsExactly(newer.getId(), own.getId(), older.getId());
+    }
+
+    @Test
+    public void onHoaxesCreated_whenFollowBackfilledTheHoaxFirst_hoaxIsNotDuplicated() {
+        Hoax hoax = hoaxService.saveHoax(createValidHoax(), user2);
+        follow("user2");
+
+        timelineService.onHoaxesCreated(new HoaxesCreatedEvent(user2.getId(), Collections.singletonList(new HoaxVM(hoax))));
+
+        assertThat(timelineIds()).containsExactly(hoax.getId());
+    }
+
+    @Test
+    public void deleteFollower_whenFollowing_followeeHoaxesAreRemovedFromTimeline() {
+        follow("user2");
+        hoaxService.saveHoax(createValidHoax(), user2);
+        Hoax own = hoaxService.saveHoax(createValidHoax(), user1);
+
+        testRestTemplate.exchange("/api/v1/users/user2/followers", HttpMethod.DELETE, null, Object.class);
+
+        assertThat(timelineIds()).containsExactly(own.getId());
+        assertThat(userRepository.findByUsername("user2").get().getFollowerCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void getTimeline_whenFolloweeIsOverFanOutLimit_receiveFolloweeHoaxMergedOnRead() {
+        appConfiguration.setTimelineFanOutLimit(0);
+        follow("user2");
+        Hoax older = hoaxService.saveHoax(createValidHoax(), user2);
+        Hoax own = hoaxService.saveHoax(createValidHoax(), user1);
+        Hoax newer = hoaxService.saveHoax(createValidHoax(), user2);
+
+        assertThat(timelineIds()).containsExactly(newer.getId(), own.getId(), older.getId());
+    }
+
+    @Test
+    public void getTimeline_whenFolloweeCrossedFanOutLimit_hoaxesAreNotDuplicated() {
+        follow("user2");
+        Hoax pushed = hoaxService.saveHoax(createValidHoax(), user2);
+        appConfiguration.setTimelineFanOutLimit(0);
+        Hoax pulled = hoaxService.saveHoax(createValidHoax(), user2);
+
+        assertThat(timelineIds()).containsExactly(pulled.getId(), pushed.getId());
+    }
+
+    @Test
+    public void getTimeline_whenMoreHoaxesThanLimit_nextCursorContinuesTimeline() {
+        follow("user2");
+        Hoax first = hoaxService.saveHoax(createValidHoax(), user2);
+        Hoax second = hoaxService.saveHoax(createValidHoax(), user1);
+        Hoax third = hoaxService.saveHoax(createValidHoax(), user2);
+
+        HoaxSliceVM page = testRestTemplate.getForEntity(API_V1_TIMELINE + "?limit=2", HoaxSliceVM.class).getBody();
+        HoaxSliceVM next = testRestTemplate.getForEntity(API_V1_TIMELINE + "?limit=2&cursor=" + page.getNextCursor(), HoaxSliceVM.class).getBody();
+
+        assertThat(ids(page)).containsExactly(third.getId(), second.getId());
+        assertThat(ids(next)).containsExactly(first.getId());
+        assertThat(next.isLast()).isTrue();
+    }
+
+    private ResponseEntity<Object> follow(String username) {
+        return testRestTemplate.postForEntity("/api/v1/users/" + username + "/followers", null, Object.class);
+    }
+
+    private List<Long> timelineIds() {
+        return ids(testRestTemplate.getForEntity(API_V1_TIMELINE, HoaxSliceVM.class).getBody());
+    }
+
+    private static List<Long> ids(HoaxSliceVM slice) {
+        return slice.getContent().stream().map(HoaxVM::getId).collect(Collectors.toList());
+    }
+}
@@ -1,6 +1,11 @@
 package com.iammanh.hoaxifyservice.user;
 
+import com.iammanh.hoaxifyservice.configuration.AuthenticationCache;
 import com.iammanh.hoaxifyservice.error.ApiError;
+import com.iammanh.hoaxifyservice.hoax.HoaxFeedCache;
+import com.iammanh.hoaxifyservice.hoax.HoaxRepository;
+import com.iammanh.hoaxifyservice.user.vm.LoginVM;
+import com.iammanh.hoaxifyservice.user.vm.TokenVM;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,6 +14,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +25,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.Map;
 
+import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidHoax;
 import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -37,13 +45,28 @@ public class LoginControllerTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    @Autowired
+    private HoaxRepository hoaxRepository;
+
     @Before
     public void setUp() throws Exception {
     }
 
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private HoaxFeedCache hoaxFeedCache;
+
     @After
     public void tearDown() throws Exception {
+        hoaxRepository.deleteAll();
+        hoaxFeedCache.invalidateAll();
         userRepository.deleteAll();
+        userCache.invalidateAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
     }
 
@@ -123,6 +146,107 @@ public class LoginControllerTest {
         assertThat(response.getBody().contains("password")).isFalse();
     }
 
+    @Test
+    public void postLogin_withSameValidCredentialsTwice_secondLoginIsServedFromAuthenticationCache() {
+        userService.save(createValidUser());
+        authenticate();
+        login(Object.class);
+        long hitCount = authenticationCache.stats().hitCount();
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(authenticationCache.stats().hitCount()).isEqualTo(hitCount + 1);
+    }
+
+    @Test
+    public void postLogin_withWrongPasswordAfterSuccessfulLogin_receiveUnauthorized() {
+        userService.save(createValidUser());
+        authenticate();
+        login(Object.class);
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        testRestTemplate.getRestTemplate().getInterceptors()
+                .add(new BasicAuthenticationInterceptor("test-user", "Wr0ngPassword"));
+        ResponseEntity<Object> response = login(Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogin_withValidCredentials_receiveAccessAndRefreshTokens() {
+        userService.save(createValidUser());
+        authenticate();
+        ResponseEntity<LoginVM> response = login(LoginVM.class);
+        assertThat(response.getBody().getToken()).isNotEmpty();
+        assertThat(response.getBody().getRefreshToken()).isNotEmpty();
+    }
+
+    @Test
+    public void postHoax_withAccessTokenFromLogin_receiveCreated() {
+        userService.save(createValidUser());
+        authenticate();
+        String token = login(LoginVM.class).getBody().getToken();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        ResponseEntity<Object> response = testRestTemplate.postForEntity("/api/v1/hoaxes", withBearer(token, createValidHoax()), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    }
+
+    @Test
+    public void postHoax_withTamperedAccessToken_receiveUnauthorized() {
+        userService.save(createValidUser());
+        authenticate();
+        String token = login(LoginVM.class).getBody().getToken();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        String tampered = "A" + token.substring(1);
+        ResponseEntity<Object> response = testRestTemplate.postForEntity("/api/v1/hoaxes", withBearer(tampered, createValidHoax()), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postRefresh_withValidRefreshToken_receiveNewTokens() {
+        userService.save(createValidUser());
+        authenticate();
+        String refreshToken = login(LoginVM.class).getBody().getRefreshToken();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        ResponseEntity<TokenVM> response = refresh(refreshToken);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getToken()).isNotEmpty();
+    }
+
+    @Test
+    public void postRefresh_withAlreadyUsedRefreshToken_receiveUnauthorized() {
+        userService.save(createValidUser());
+        authenticate();
+        String refreshToken = login(LoginVM.class).getBody().getRefreshToken();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        refresh(refreshToken);
+        ResponseEntity<TokenVM> response = refresh(refreshToken);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void postLogout_withAccessToken_tokenIsRevoked() {
+        userService.save(createValidUser());
+        authenticate();
+        String token = login(LoginVM.class).getBody().getToken();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        testRestTemplate.postForEntity("/api/v1/logout", withBearer(token, null), Object.class);
+        ResponseEntity<Object> response = testRestTemplate.postForEntity("/api/v1/hoaxes", withBearer(token, createValidHoax()), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private <T> HttpEntity<T> withBearer(String token, T body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private ResponseEntity<TokenVM> refresh(String refreshToken) {
+        return testRestTemplate.postForEntity(API_V1_LOGIN + "/refresh", new TokenVM(null, refreshToken), TokenVM.class);
+    }
+
     private void authenticate() {
         testRestTemplate.getRestTemplate().getInterceptors()
                 .add(new BasicAuthenticationInterceptor("test-user", "P4ssword"));
@@ -1,7 +1,11 @@
 package com.iammanh.hoaxifyservice.user;
 
 import com.iammanh.hoaxifyservice.configuration.AppConfiguration;
+import com.iammanh.hoaxifyservice.configuration.AuthenticationCache;
 import com.iammanh.hoaxifyservice.error.ApiError;
+import com.iammanh.hoaxifyservice.file.FileService;
+import com.iammanh.hoaxifyservice.file.StoredImage;
+import com.iammanh.hoaxifyservice.file.StoredImageRepository;
 import com.iammanh.hoaxifyservice.model.TestPage;
 import com.iammanh.hoaxifyservice.shared.GenericApiResponse;
 import com.iammanh.hoaxifyservice.user.vm.UserUpdateVM;
@@ -18,24 +22,36 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.support.BasicAuthenticationInterceptor;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static com.iammanh.hoaxifyservice.utils.TestUtil.createValidUser;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 
 @RunWith(SpringRunner.class)
@@ -58,9 +74,25 @@ public class UserControllerTest {
     @Autowired
     private AppConfiguration appConfiguration;
 
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private StoredImageRepository storedImageRepository;
+
+    @Before
+    public void setUp() {
+        userService.rebuildSuggestIndex();
+    }
+
     @After
     public void tearDown() throws Exception {
         userRepository.deleteAll();
+        storedImageRepository.deleteAll();
+        userCache.invalidateAll();
         testRestTemplate.getRestTemplate().getInterceptors().clear();
         FileUtils.cleanDirectory(new File(appConfiguration.getFullProfileImagesPath()));
     }
@@ -370,6 +402,43 @@ public class UserControllerTest {
         assertThat(response.getBody().getTotalElements()).isEqualTo(2);
     }
 
+    @Test
+    public void getUsers_whenETagMatches_receiveNotModified() {
+        userService.save(createValidUser("user1"));
+        String etag = testRestTemplate.getForEntity(API_V1_USERS, String.class).getHeaders().getETag();
+
+        ResponseEntity<String> response = getIfNoneMatch(API_V1_USERS, etag);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    public void getUsers_whenUserIsSavedAfterETagWasSent_receiveOk() {
+        userService.save(createValidUser("user1"));
+        String etag = testRestTemplate.getForEntity(API_V1_USERS, String.class).getHeaders().getETag();
+        userService.save(createValidUser("user2"));
+
+        assertThat(getIfNoneMatch(API_V1_USERS, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void getUsers_whenUserIsWrittenByAnotherInstanceAfterETagWasSent_receiveOk() {
+        userService.save(createValidUser("user1"));
+        String etag = testRestTemplate.getForEntity(API_V1_USERS, String.class).getHeaders().getETag();
+        userRepository.save(createValidUser("user2"));
+
+        assertThat(getIfNoneMatch(API_V1_USERS, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void getUsers_whenETagWasSentToAnotherUser_receiveOk() {
+        userService.save(createValidUser("user1"));
+        userService.save(createValidUser("user2"));
+        String etag = testRestTemplate.getForEntity(API_V1_USERS, String.class).getHeaders().getETag();
+        authenticate("user1");
+
+        assertThat(getIfNoneMatch(API_V1_USERS, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
     private <T> ResponseEntity<T> getUsers(ParameterizedTypeReference<T> responseType) {
         return testRestTemplate.exchange(API_V1_USERS, HttpMethod.GET, null, responseType);
     }
@@ -409,10 +478,115 @@ public class UserControllerTest {
         assertThat(response.getBody().contains("unknown-user")).isTrue();
     }
 
+    @Test
+    public void getUserByUsername_whenRequestedTwice_secondRequestServedFromCache() {
+        String username = "test-user";
+        userService.save(createValidUser(username));
+        getUser(username, Object.class);
+
+        long hitCount = userCache.stats().hitCount();
+        getUser(username, Object.class);
+        assertThat(userCache.stats().hitCount()).isEqualTo(hitCount + 1);
+    }
+
+    @Test
+    public void getUserByUsername_afterUserIsUpdated_receiveUpdatedDisplayName() {
+        User user = userService.save(createValidUser("user1"));
+        getUser(user.getUsername(), Object.class);
+        authenticate(user.getUsername());
+        UserUpdateVM userUpdateVM = createValidUserUpdateVM();
+        putUser(user.getId(), new HttpEntity<>(userUpdateVM), Object.class);
+
+        ResponseEntity<UserVM> response = getUser(user.getUsername(), UserVM.class);
+        assertThat(response.getBody().getDisplayName()).isEqualTo(userUpdateVM.getDisplayName());
+    }
+
+    @Test
+    public void getUserByUsername_whenETagMatches_receiveNotModified() {
+        userService.save(createValidUser("user1"));
+        String etag = getUser("user1", String.class).getHeaders().getETag();
+
+        ResponseEntity<String> response = getIfNoneMatch(API_V1_USERS + "/user1", etag);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    public void getUserByUsername_whenUserIsUpdatedAfterETagWasSent_receiveOk() {
+        User user = userService.save(createValidUser("user1"));
+        String etag = getUser("user1", String.class).getHeaders().getETag();
+        authenticate(user.getUsername());
+        putUser(user.getId(), new HttpEntity<>(createValidUserUpdateVM()), Object.class);
+
+        assertThat(getIfNoneMatch(API_V1_USERS + "/user1", etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
     private <T> ResponseEntity<T> getUser(String username, Class<T> responseType) {
         return testRestTemplate.getForEntity(API_V1_USERS + "/" + username, responseType);
     }
 
+    private ResponseEntity<String> getIfNoneMatch(String path, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return testRestTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    // ####################### SUGGEST USERS ##########################
+
+    @Test
+    public void suggestUsers_whenUsernameStartsWithPrefix_receiveUser() {
+        userService.save(createValidUser("alice"));
+        userService.save(createValidUser("bob"));
+
+        assertThat(suggest("AL")).extracting(UserVM::getUsername).containsExactly("alice");
+    }
+
+    @Test
+    public void suggestUsers_whenDisplayNameWordStartsWithPrefixWithoutDiacritics_receiveUser() {
+        User user = createValidUser("user1");
+        user.setDisplayName("Nguyễn Văn An");
+        userService.save(user);
+
+        assertThat(suggest("van")).extracting(UserVM::getUsername).containsExactly("user1");
+    }
+
+    @Test
+    public void suggestUsers_whenUsernameAndDisplayNameMatch_receiveUserOnce() {
+        User user = createValidUser("carol");
+        user.setDisplayName("carol smith");
+        userService.save(user);
+
+        assertThat(suggest("car")).hasSize(1);
+    }
+
+    @Test
+    public void suggestUsers_whenLoggedInUserMatches_doesNotReceiveLoggedInUser() {
+        userService.save(createValidUser("user1"));
+        userService.save(createValidUser("user2"));
+        authenticate("user1");
+
+        assertThat(suggest("user")).extracting(UserVM::getUsername).containsExactly("user2");
+    }
+
+    @Test
+    public void suggestUsers_afterDisplayNameIsUpdated_receiveUserForNewDisplayNameOnly() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate("user1");
+        UserUpdateVM userUpdateVM = createValidUserUpdateVM();
+        userUpdateVM.setDisplayName("zebra crossing");
+        putUser(user.getId(), new HttpEntity<>(userUpdateVM), Object.class);
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+
+        assertThat(suggest("zebra")).extracting(UserVM::getUsername).containsExactly("user1");
+        assertThat(suggest("test-name")).isEmpty();
+    }
+
+    private List<UserVM> suggest(String prefix) {
+        return testRestTemplate.exchange(API_V1_USERS + "/suggest?prefix=" + prefix, HttpMethod.GET, null,
+                new ParameterizedTypeReference<List<UserVM>>() {
+                }).getBody();
+    }
+
     // ####################### PUT USER ##########################
 
     @Test
@@ -488,7 +662,7 @@ public class UserControllerTest {
     }
 
     @Test
-    public void putUser_whenValidRequestBodyWithSupportedImageFromAuthorizedUser_imageIsStoreUnderProfileFolder() throws IOException {
+    public void putUser_whenValidRequestBodyWithSupportedImageFromAuthorizedUser_imageIsStoreUnderProfileFolder() throws IOException, InterruptedException {
         User user = userService.save(createValidUser("user1"));
         authenticate(user.getUsername());
 
@@ -505,6 +679,7 @@ public class UserControllerTest {
         String storedImageName = response.getBody().getImage();
         String profileImagePath = appConfiguration.getFullProfileImagesPath() + "/" + storedImageName;
         File file = new File(profileImagePath);
+        awaitExists(file, true);
         assertThat(file.exists()).isTrue();
     }
 
@@ -604,7 +779,7 @@ public class UserControllerTest {
     }
 
     @Test
-    public void putUser_withValidRequestBodyWithJPGFileFromAuthorizedUser_removesOldImageFromStorage() throws IOException {
+    public void putUser_withValidRequestBodyWithJPGFileFromAuthorizedUser_removesOldImageFromStorage() throws IOException, InterruptedException {
         User user = userService.save(createValidUser("user1"));
         authenticate(user.getUsername());
 
@@ -617,15 +792,177 @@ public class UserControllerTest {
         HttpEntity<UserUpdateVM> requestEntity = new HttpEntity<>(userUpdateVM);
         ResponseEntity<UserVM> response = putUser(user.getId(), requestEntity, UserVM.class);
 
+        byte[] newImageBytes = FileUtils.readFileToByteArray(new ClassPathResource("profile.jpg").getFile());
+        userUpdateVM.setImage(Base64.getEncoder().encodeToString(newImageBytes));
         putUser(user.getId(), requestEntity, ApiError.class);
 
         String storedImageName = response.getBody().getImage();
         String profileImagePath = appConfiguration.getFullProfileImagesPath() + "/" + storedImageName;
         File profileImageFile = new File(profileImagePath);
+        awaitExists(profileImageFile, false);
 
         assertThat(profileImageFile.exists()).isFalse();
     }
 
+    @Test
+    public void putUser_whenValidRequestBodyFromAuthorizedUser_evictsCachedCredentials() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        UserUpdateVM userUpdateVM = createValidUserUpdateVM();
+        putUser(user.getId(), new HttpEntity<>(userUpdateVM), Object.class);
+
+        long missCount = authenticationCache.stats().missCount();
+        putUser(user.getId(), new HttpEntity<>(userUpdateVM), Object.class);
+        assertThat(authenticationCache.stats().missCount()).isEqualTo(missCount + 1);
+    }
+
+    @Test
+    public void putUser_whenValidRequestBodyFromAuthorizedUser_versionIsIncremented() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        putUser(user.getId(), new HttpEntity<>(createValidUserUpdateVM()), Object.class);
+        putUser(user.getId(), new HttpEntity<>(createValidUserUpdateVM()), Object.class);
+
+        assertThat(userRepository.findById(user.getId()).get().getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    public void putUser_whenManyRequestsUpdateTheSameUserConcurrently_onlyTheLastImageStaysReferenced() throws Exception {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        String[] images = {base64Of("profile.png"), base64Of("profile.jpg")};
+        int threads = 16;
+        int updatesPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<HttpStatus>>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                List<HttpStatus> statuses = new ArrayList<>();
+                for (int i = 0; i < updatesPerThread; i++) {
+                    UserUpdateVM userUpdateVM = createValidUserUpdateVM();
+                    userUpdateVM.setDisplayName("display-" + thread + "-" + i);
+                    userUpdateVM.setImage(images[(thread + i) % images.length]);
+                    statuses.add(putUser(user.getId(), new HttpEntity<>(userUpdateVM), Object.class).getStatusCode());
+                }
+                return statuses;
+            }));
+        }
+        start.countDown();
+        List<HttpStatus> statuses = new ArrayList<>();
+        for (Future<List<HttpStatus>> result : results)
+            statuses.addAll(result.get(2, TimeUnit.MINUTES));
+        executor.shutdown();
+
+        assertThat(statuses).isSubsetOf(HttpStatus.OK, HttpStatus.CONFLICT);
+        User updated = userRepository.findById(user.getId()).get();
+        assertThat(updated.getVersion()).isEqualTo(statuses.stream().filter(HttpStatus.OK::equals).count());
+        assertThat(storedImageRepository.findAll())
+                .extracting(StoredImage::getName, StoredImage::getRefCount)
+                .containsExactly(tuple(updated.getImage(), 1L));
+    }
+
+    @Test
+    public void putUserImage_whenPngIsUploadedByAuthorizedUser_imageIsStoredUnderProfileFolder() throws InterruptedException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<UserVM> response = putUserImage(user.getId(), new ClassPathResource("profile.png"), UserVM.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        File file = new File(appConfiguration.getFullProfileImagesPath() + "/" + response.getBody().getImage());
+        awaitExists(file, true);
+        assertThat(file.exists()).isTrue();
+    }
+
+    @Test
+    public void getImage_whenSizeIsRequested_receiveSmallestVariantAtLeastThatLarge() throws InterruptedException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+        String image = putUserImage(user.getId(), new ClassPathResource("profile.png"), UserVM.class).getBody().getImage();
+        File original = new File(appConfiguration.getFullProfileImagesPath() + "/" + image);
+        awaitExists(original, true);
+
+        ResponseEntity<byte[]> response = testRestTemplate.getForEntity("/images/profile/" + image + "?size=40", byte[].class);
+
+        File variant = new File(appConfiguration.getFullProfileImagesPath() + "/" + FileService.variantName(image, 64));
+        assertThat(response.getBody().length).isEqualTo(variant.length());
+    }
+
+    @Test
+    public void putUserImage_whenTxtFileIsUploadedByAuthorizedUser_receiveBadRequest() {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<Object> response = putUserImage(user.getId(), new ClassPathResource("profile.txt"), Object.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void putUserImage_whenSecondImageIsUploaded_removesOldImageFromStorage() throws InterruptedException {
+        User user = userService.save(createValidUser("user1"));
+        authenticate(user.getUsername());
+
+        ResponseEntity<UserVM> first = putUserImage(user.getId(), new ClassPathResource("profile.png"), UserVM.class);
+        putUserImage(user.getId(), new ClassPathResource("profile.jpg"), UserVM.class);
+
+        File oldImage = new File(appConfiguration.getFullProfileImagesPath() + "/" + first.getBody().getImage());
+        awaitExists(oldImage, false);
+        assertThat(oldImage.exists()).isFalse();
+    }
+
+    @Test
+    public void putUserImage_whenTwoUsersUploadTheSameImage_imageIsStoredOnce() throws InterruptedException {
+        User user1 = userService.save(createValidUser("user1"));
+        User user2 = userService.save(createValidUser("user2"));
+
+        authenticate(user1.getUsername());
+        String image1 = putUserImage(user1.getId(), new ClassPathResource("profile.png"), UserVM.class).getBody().getImage();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authenticate(user2.getUsername());
+        String image2 = putUserImage(user2.getId(), new ClassPathResource("profile.png"), UserVM.class).getBody().getImage();
+
+        assertThat(image2).isEqualTo(image1);
+        assertThat(storedImageRepository.findById(image1).get().getRefCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void putUserImage_whenSharedImageIsReplacedByOneUser_imageIsKeptForTheOther() throws InterruptedException {
+        User user1 = userService.save(createValidUser("user1"));
+        User user2 = userService.save(createValidUser("user2"));
+
+        authenticate(user1.getUsername());
+        String shared = putUserImage(user1.getId(), new ClassPathResource("profile.png"), UserVM.class).getBody().getImage();
+        testRestTemplate.getRestTemplate().getInterceptors().clear();
+        authenticate(user2.getUsername());
+        putUserImage(user2.getId(), new ClassPathResource("profile.png"), UserVM.class);
+        putUserImage(user2.getId(), new ClassPathResource("profile.jpg"), UserVM.class);
+
+        File sharedImage = new File(appConfiguration.getFullProfileImagesPath() + "/" + shared);
+        awaitExists(sharedImage, true);
+        Thread.sleep(200);
+        assertThat(sharedImage.exists()).isTrue();
+    }
+
+    @Test
+    public void putUserImage_whenUnauthorizedUserSendsTheRequest_receiveUnauthorized() {
+        ResponseEntity<Object> response = putUserImage(123, new ClassPathResource("profile.png"), Object.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    private void awaitExists(File file, boolean exists) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (file.exists() != exists && System.currentTimeMillis() < deadline)
+            Thread.sleep(20);
+    }
+
+    private String base64Of(String resource) throws IOException {
+        return Base64.getEncoder().encodeToString(FileUtils.readFileToByteArray(new ClassPathResource(resource).getFile()));
+    }
+
     private UserUpdateVM createValidUserUpdateVM() {
         UserUpdateVM userUpdateVM = new UserUpdateVM();
         userUpdateVM.setDisplayName("new-display-name");
@@ -636,4 +973,13 @@ public class UserControllerTest {
         String path = API_V1_USERS + "/" + id;
         return testRestTemplate.exchange(path, HttpMethod.PUT, requestEntity, responseType);
     }
+
+    private <T> ResponseEntity<T> putUserImage(long id, Resource image, Class<T> responseType) {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("image", image);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        String path = API_V1_USERS + "/" + id + "/image";
+        return testRestTemplate.exchange(path, HttpMethod.PUT, new HttpEntity<>(body, headers), responseType);
+    }
 }
@@ -5,10 +5,12 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @RunWith(SpringRunner.class)
 @DataJpaTest
@@ -38,4 +40,34 @@ public class UserRepositoryTest {
     public void findByUsername_whenUserDoesNotExist_returnsNull() {
         assertThat(userRepository.findByUsername("test-user").isPresent()).isFalse();
     }
+
+    @Test
+    public void saveAndFlush_whenUsernameAlreadyExists_throwsDataIntegrityViolationException() {
+        User user = new User();
+        user.setUsername("test-user");
+        user.setPassword("P4ssword");
+        user.setDisplayName("test-name");
+        testEntityManager.persistAndFlush(user);
+
+        User duplicate = new User();
+        duplicate.setUsername("test-user");
+        duplicate.setPassword("P4ssword");
+        duplicate.setDisplayName("other-name");
+
+        assertThatThrownBy(() -> userRepository.saveAndFlush(duplicate))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    public void updateProfile_whenVersionIsStale_updatesNoRow() {
+        User user = new User();
+        user.setUsername("test-user");
+        user.setPassword("P4ssword");
+        user.setDisplayName("test-name");
+        testEntityManager.persistAndFlush(user);
+        long version = userRepository.findProfileById(user.getId()).get().getVersion();
+
+        assertThat(userRepository.updateProfile(user.getId(), version, "first-name", null)).isEqualTo(1);
+        assertThat(userRepository.updateProfile(user.getId(), version, "second-name", null)).isEqualTo(0);
+    }
 }